@@ -0,0 +1,271 @@
+package pscraper;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import Events.LifecycleEvt;
+
+/**
+ *
+ * @author Asmod
+ * 
+ * @brief End to end throughput run against a StandInServer.
+ * 
+ *        Drives PractiScoreScraper.run() through a real browser, so unlike the
+ *        JMH benchmarks it measures navigation, rendering waits and all. Needs
+ *        the Playwright browsers installed. Run it with
+ * 
+ *          java -cp target/benchmarks.jar pscraper.EndToEndBenchmark [options]
+ * 
+ *        and it prints matches/min, stages/sec, rows/sec and peak RSS for the
+ *        JVM and the browser processes it spawned (Linux only, from /proc).
+ */
+public class EndToEndBenchmark {
+
+    private static final List<String> DIVISIONS = Arrays.asList("CO", "L", "LO", "O", "PCC", "P", "SS", "ALL");
+
+    private static final String USAGE =
+        "Usage: EndToEndBenchmark [options]\n" +
+        "  --matches <n>          Matches to scrape (default 5)\n" +
+        "  --stages <n>           Stages per match (default 10)\n" +
+        "  --shooters <n>         Shooters per match (default 300)\n" +
+        "  --latency <ms>         Client side render latency (default 200)\n" +
+        "  --failure-rate <p>     Share of table redraws that fail (default 0)\n" +
+        "  --division <code>      CO, L, LO, O, PCC, P, SS or ALL (default CO)\n" +
+        "  --snapshot             Use snapshot mode\n" +
+        "  --payload              Use payload mode\n" +
+        "  --stage-pages <n>      Pages selecting stages at once (default 1)\n" +
+        "  --headful              Show the browser\n" +
+        "  --out <dir>            Where result files go (default target/e2e)";
+
+    public static void main (String[] args) throws Exception {
+
+        int     matches   = 5;
+        String  division  = "CO";
+        boolean snapshot  = false;
+        boolean payload   = false;
+        int     pages     = 1;
+        boolean headless  = true;
+        String  outDir    = "target/e2e";
+
+        StandInServer server = new StandInServer();
+
+        try {
+            for (int idx = 0; idx < args.length; idx++) {
+                switch (args[idx]) {
+                    case "--matches":      matches = Integer.parseInt(args[++idx]);                break;
+                    case "--stages":       server.setStages(Integer.parseInt(args[++idx]));        break;
+                    case "--shooters":     server.setShooters(Integer.parseInt(args[++idx]));      break;
+                    case "--latency":      server.setRenderLatency(Long.parseLong(args[++idx]));   break;
+                    case "--failure-rate": server.setFailureRate(Double.parseDouble(args[++idx])); break;
+                    case "--division":     division = args[++idx].toUpperCase();                   break;
+                    case "--snapshot":     snapshot = true;                                        break;
+                    case "--payload":      payload  = true;                                        break;
+                    case "--stage-pages":  pages    = Integer.parseInt(args[++idx]);               break;
+                    case "--headful":      headless = false;                                       break;
+                    case "--out":          outDir   = args[++idx];                                 break;
+                    default:
+                        System.err.println(USAGE);
+                        System.exit(2);
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+
+        /* The scraper takes a code, anything else would leave it with no division to filter on */
+        if (!DIVISIONS.contains(division)) {
+            System.err.println(String.format("Unknown division %s.%n%s", division, USAGE));
+            System.exit(2);
+        }
+
+        new File(outDir).mkdirs();
+
+        server.start();
+
+        List<Match> matchList = new ArrayList<>();
+
+        for (int idx = 0; idx < matches; idx++) {
+            String matchId = "bench-" + idx;
+            matchList.add(new Match(outDir + "/" + matchId, server.url(matchId)));
+        }
+
+        PractiScoreScraper scraper = new PractiScoreScraper(matchList, division, headless);
+
+        scraper.setJournalFile(null);
+        scraper.setFailureReport(new FailureReport(null));
+        scraper.setSnapshotMode(snapshot);
+        scraper.setPayloadMode(payload);
+        scraper.setStagePages(pages);
+
+        String[] outcome = new String[1];
+
+        scraper.addLifecycleHandler(evt -> outcome[0] = (evt.kind == LifecycleEvt.Kind.COMPLETE) ? "complete" : "aborted: " + evt.message);
+
+        RssSampler sampler = new RssSampler();
+        sampler.start();
+
+        long started = System.nanoTime();
+
+        scraper.run();
+
+        double seconds = (System.nanoTime() - started) / 1e9;
+
+        sampler.interrupt();
+        sampler.join();
+
+        server.stop();
+
+        ScrapeMetrics metrics = scraper.getMetrics();
+
+        System.out.printf("Outcome           %s%n",        outcome[0]);
+        System.out.printf("Wall time         %.1f s%n",    seconds);
+        System.out.printf("Matches/min       %.2f%n",      metrics.getMatchesCompleted() * 60 / seconds);
+        System.out.printf("Stages/sec        %.2f%n",      metrics.getStagesCompleted() / seconds);
+        System.out.printf("Rows/sec          %.1f%n",      metrics.getRowsWritten() / seconds);
+        System.out.printf("Requests served   %d%n",        server.getRequests());
+        System.out.printf("Matches failed    %d%n",        scraper.getFailureReport().getFailures());
+        System.out.printf("Peak JVM RSS      %s%n",        mb(RssSampler.selfPeakKb()));
+        System.out.printf("Peak browser RSS  %s%n",        mb(sampler.peakChildrenKb));
+        System.out.println();
+        System.out.println(metrics.getSummary());
+
+        System.exit(outcome[0] != null && outcome[0].equals("complete") ? 0 : 1);
+    }
+
+    private static String mb (long kb) {
+        return kb < 0 ? "n/a" : String.format("%.1f MB", kb / 1024.0);
+    }
+
+    /**
+     * Polls /proc for the combined RSS of every process descended from this
+     * one, which is where Playwright's driver and the browser live. The
+     * kernel keeps a high water mark for our own process, but not for a
+     * process tree, so the children have to be sampled.
+     */
+    private static class RssSampler extends Thread {
+
+        private static final long PERIOD = 250;
+
+        volatile long peakChildrenKb = -1;
+
+        RssSampler () {
+            super("rss-sampler");
+            setDaemon(true);
+        }
+
+        @Override
+        public void run () {
+
+            if (!new File("/proc/self/status").exists()) {
+                return;
+            }
+
+            peakChildrenKb = 0;
+
+            while (!isInterrupted()) {
+
+                peakChildrenKb = Math.max(peakChildrenKb, childrenKb());
+
+                try {
+                    Thread.sleep(PERIOD);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+
+        static long selfPeakKb () {
+            return statusField("/proc/self/status", "VmHWM:");
+        }
+
+        private static long childrenKb () {
+
+            String self;
+
+            try {
+                self = Paths.get("/proc/self").toRealPath().getFileName().toString();
+            } catch (IOException e) {
+                return 0;
+            }
+
+            /* pid -> parent pid for everything we can see */
+            Map<String, String> parents = new HashMap<>();
+
+            File[] procs = new File("/proc").listFiles();
+
+            if (procs == null) {
+                return 0;
+            }
+
+            for (File proc : procs) {
+
+                String pid = proc.getName();
+
+                if (!Character.isDigit(pid.charAt(0))) {
+                    continue;
+                }
+
+                try {
+                    String stat = new String(Files.readAllBytes(Paths.get("/proc", pid, "stat")), StandardCharsets.UTF_8);
+                    /* The command name is parenthesised and may hold spaces, the ppid is the second field after it */
+                    String[] fields = stat.substring(stat.lastIndexOf(')') + 2).split(" ");
+                    parents.put(pid, fields[1]);
+                } catch (IOException | RuntimeException e) {
+                    /* Exited while we were looking */
+                }
+            }
+
+            Set<String> tree = new HashSet<>();
+            tree.add(self);
+
+            /* Grow the tree until nothing new joins it */
+            boolean grew = true;
+
+            while (grew) {
+                grew = false;
+                for (Map.Entry<String, String> entry : parents.entrySet()) {
+                    if (tree.contains(entry.getValue()) && tree.add(entry.getKey())) {
+                        grew = true;
+                    }
+                }
+            }
+
+            tree.remove(self);
+
+            long total = 0;
+
+            for (String pid : tree) {
+                total += Math.max(0, statusField("/proc/" + pid + "/status", "VmRSS:"));
+            }
+
+            return total;
+        }
+
+        private static long statusField (String path, String field) {
+
+            try {
+                for (String line : Files.readAllLines(Paths.get(path), StandardCharsets.UTF_8)) {
+                    if (line.startsWith(field)) {
+                        return Long.parseLong(line.substring(field.length()).trim().split("\\s+")[0]);
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                /* Not Linux, or the process is gone */
+            }
+
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package pscraper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ *
+ * @author Asmod
+ * 
+ * @brief Validation and metric parsing over one stage table.
+ * 
+ *        parseMetrics is the current chain. parseMetricsLegacy is the
+ *        isNumeric / re-parse / List<Double> chain it replaced, kept here as
+ *        a yardstick. processStage is the whole per-stage path, writes and
+ *        events included.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ParseBenchmark {
+
+    private static final int PSBL_IDX   = 1;
+    private static final int MAXPTS_IDX = 2;
+    private static final int PTS_IDX    = 3;
+    private static final int TIME_IDX   = 5;
+
+    private static final int[] LEGACY_INDICES = {1, 2, 3, 4, 5, 11, 12, 13, 14, 15, 16, 17, 18};
+
+    @Param({"50", "300", "2000"})
+    public int shooters;
+
+    private String[][]         table;
+    private PractiScoreScraper scraper;
+    private double[]           row;
+    private File               out;
+
+    @Setup(Level.Trial)
+    public void setup () throws IOException {
+
+        table   = StageFixtures.table(shooters);
+        scraper = new PractiScoreScraper(new ArrayList<Match>(), "CO", true);
+        row     = new double[RowSink.COLUMNS.length];
+
+        out = File.createTempFile("parse-bench", ".csv");
+        scraper.fwriter = new CsvRowWriter(out, false);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown () {
+        scraper.closeLogFile();
+        out.delete();
+    }
+
+    @Benchmark
+    public void parseMetrics (Blackhole bh) {
+
+        double maxPoints = Double.parseDouble(table[1][MAXPTS_IDX]);
+
+        for (int rowIdx = 1; rowIdx < table.length; rowIdx++) {
+            bh.consume(scraper.parseMetrics(table, rowIdx, maxPoints, row));
+            bh.consume(row);
+        }
+    }
+
+    @Benchmark
+    public void parseMetricsLegacy (Blackhole bh) {
+
+        double maxPoints = Double.parseDouble(table[1][MAXPTS_IDX]);
+
+        List<Double> metrics = new ArrayList<>();
+
+        for (int rowIdx = 1; rowIdx < table.length; rowIdx++) {
+
+            metrics.clear();
+
+            boolean valid = false;
+
+            for (int cellIdx : LEGACY_INDICES) {
+
+                String cellText = table[rowIdx][cellIdx];
+
+                valid = false;
+
+                if (!isNumeric(cellText)) {
+                    break;
+                }
+                if (cellIdx == PSBL_IDX && Double.parseDouble(cellText) <= 0) {
+                    break;
+                }
+                if (cellIdx == PTS_IDX && Double.parseDouble(cellText) <= 0) {
+                    break;
+                }
+                if (cellIdx == TIME_IDX && Double.parseDouble(cellText) <= 0) {
+                    break;
+                }
+
+                if (cellIdx == MAXPTS_IDX) {
+                    metrics.add(maxPoints);
+                } else {
+                    metrics.add(Double.valueOf(cellText));
+                }
+
+                valid = true;
+            }
+
+            bh.consume(valid);
+            bh.consume(metrics);
+        }
+    }
+
+    @Benchmark
+    public void processStage () {
+        scraper.processStage(table, 1, 2, 0, 1);
+    }
+
+    private static boolean isNumeric (String strNum) {
+
+        if (strNum == null) {
+            return false;
+        }
+        try {
+            Double.parseDouble(strNum);
+        } catch (NumberFormatException nfe) {
+            return false;
+        }
+        return true;
+    }
+}
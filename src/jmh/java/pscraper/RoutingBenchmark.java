@@ -0,0 +1,75 @@
+package pscraper;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ *
+ * @author Asmod
+ * 
+ * @brief Routing a stage's division cells to an output.
+ * 
+ *        divisionCode is the hash lookup used for ALL mode. containsScan is
+ *        what routing with the single-division contains check would cost.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RoutingBenchmark {
+
+    private static final int DIV_IDX = 6;
+
+    @Param({"50", "300", "2000"})
+    public int shooters;
+
+    private String[] divCells;
+
+    @Setup(Level.Trial)
+    public void setup () {
+
+        String[][] table = StageFixtures.table(shooters);
+
+        divCells = new String[shooters];
+
+        for (int idx = 0; idx < shooters; idx++) {
+            divCells[idx] = table[idx + 1][DIV_IDX];
+        }
+    }
+
+    @Benchmark
+    public void divisionCode (Blackhole bh) {
+        for (String cell : divCells) {
+            bh.consume(PractiScoreScraper.divisionCode(cell));
+        }
+    }
+
+    @Benchmark
+    public void containsScan (Blackhole bh) {
+        for (String cell : divCells) {
+            String match = null;
+            for (String div : StageFixtures.DIVISIONS) {
+                if (cell.contains(div)) {
+                    match = div;
+                    break;
+                }
+            }
+            bh.consume(match);
+        }
+    }
+}
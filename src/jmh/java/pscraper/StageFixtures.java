@@ -0,0 +1,109 @@
+package pscraper;
+
+import java.util.Random;
+
+/**
+ *
+ * @author Asmod
+ * 
+ * @brief Synthetic results tables shaped like #mainResultsTable snapshots.
+ * 
+ *        Seeded, so every run and every machine sees the same data. Row 0 is
+ *        the header (no td cells), the top scorer comes first, and a few
+ *        percent of shooters are DQ/DNF rows or zero-time stages that the
+ *        validation chain has to throw out.
+ */
+public final class StageFixtures {
+
+    public static final long SEED = 0x5eedL;
+
+    public static final String[] DIVISIONS = {
+        "Carry Optics", "Limited", "Limited Optics", "Open", "PCC", "Production", "Single Stack"
+    };
+
+    private static final int CELLS = 19;
+
+    private StageFixtures () {}
+
+    public static String[][] table (int shooters) {
+        return table(shooters, SEED + shooters);
+    }
+
+    public static String[][] table (int shooters, long seed) {
+
+        Random rnd = new Random(seed);
+
+        String[][] rows = new String[shooters + 1][];
+
+        rows[0] = new String[0];
+
+        int maxPoints = 60 + 5 * rnd.nextInt(20);
+
+        for (int idx = 1; idx <= shooters; idx++) {
+
+            String[] cells = new String[CELLS];
+
+            int a   = rnd.nextInt(maxPoints / 5 + 1);
+            int c   = rnd.nextInt(6);
+            int d   = rnd.nextInt(3);
+            int m   = rnd.nextInt(3);
+            int pts = Math.max(0, 5 * a + 3 * c + d - 10 * m);
+
+            double time = 8 + rnd.nextDouble() * 30;
+            double hf   = pts / time;
+
+            cells[0]  = Integer.toString(idx);
+            cells[1]  = String.format("%.2f", 100.0 * (shooters - idx + 1) / shooters);
+            cells[2]  = Integer.toString(maxPoints);
+            cells[3]  = Integer.toString(pts);
+            cells[4]  = String.format("%.4f", hf);
+            cells[5]  = String.format("%.2f", time);
+            cells[6]  = DIVISIONS[rnd.nextInt(DIVISIONS.length)];
+            cells[7]  = "Shooter " + idx;
+            cells[8]  = "A" + rnd.nextInt(100000);
+            cells[9]  = "B";
+            cells[10] = "Minor";
+            cells[11] = Integer.toString(a);
+            cells[12] = "0";
+            cells[13] = Integer.toString(c);
+            cells[14] = Integer.toString(d);
+            cells[15] = Integer.toString(m);
+            cells[16] = "0";
+            cells[17] = Integer.toString(rnd.nextInt(2));
+            cells[18] = Integer.toString(rnd.nextInt(2));
+
+            /* The rows the scraper has to reject */
+            switch (rnd.nextInt(40)) {
+                case 0:  cells[5] = "DNF";  break;
+                case 1:  cells[1] = "0.00"; break;
+                case 2:  cells[5] = "0.00"; break;
+                default: break;
+            }
+
+            rows[idx] = cells;
+        }
+
+        return rows;
+    }
+
+    /* The validated metric rows a table turns into, for the writer benchmarks */
+    public static double[][] metricRows (int shooters) {
+
+        Random rnd = new Random(SEED + shooters);
+
+        double[][] rows = new double[shooters][RowSink.COLUMNS.length];
+
+        for (double[] row : rows) {
+            row[0] = Math.round(rnd.nextDouble() * 10000) / 100.0;
+            row[1] = 120;
+            row[2] = rnd.nextInt(121);
+            row[3] = Math.round(rnd.nextDouble() * 120000) / 10000.0;
+            row[4] = Math.round((8 + rnd.nextDouble() * 30) * 100) / 100.0;
+            for (int col = 5; col < row.length; col++) {
+                row[col] = rnd.nextInt(24);
+            }
+        }
+
+        return rows;
+    }
+}
@@ -0,0 +1,257 @@
+package pscraper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ *
+ * @author Asmod
+ * 
+ * @brief Local stand-in for a PractiScore results page.
+ * 
+ *        /results/<match> serves a page with the same #divisionLevel and
+ *        #resultLevel selects as the real thing. Like the real page, it
+ *        downloads every stage's results once (/api/<match>/results.json, in
+ *        the shape ResultsPayload reads) and draws #mainResultsTable client
+ *        side. Each selection clears the table and redraws it after the
+ *        configured render latency. A share of redraws can be made to fail,
+ *        which leaves the table missing. Data comes from StageFixtures, so a
+ *        given match id always serves the same results.
+ */
+public class StandInServer {
+
+    /* Payload field for each table cell, in table order */
+    private static final String[] RECORD_FIELDS = {
+        "place", "stagePercent", "stagePoints", "points", "hitFactor", "stageTimeSecs", "division",
+        "name", "memberNumber", "class", "powerFactor", "A", "B", "C", "D", "M", "NPM", "NS", "Proc"
+    };
+
+    private static final int DIV_CELL = 6;
+
+    private int    stages        = 10;
+    private int    shooters      = 300;
+    private long   renderLatency = 200;
+    private double failureRate   = 0;
+
+    private final Map<String, String> cache = new ConcurrentHashMap<>();
+
+    private final AtomicLong requests = new AtomicLong();
+
+    private HttpServer server;
+
+    public void setStages (int stages) {
+        this.stages = stages;
+    }
+
+    public void setShooters (int shooters) {
+        this.shooters = shooters;
+    }
+
+    public void setRenderLatency (long millis) {
+        this.renderLatency = millis;
+    }
+
+    public void setFailureRate (double failureRate) {
+        this.failureRate = failureRate;
+    }
+
+    public long getRequests () {
+        return requests.get();
+    }
+
+    public void start () throws IOException {
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+
+        server.createContext("/results/", this::page);
+        server.createContext("/api/",     this::api);
+
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+    }
+
+    public void stop () {
+        server.stop(0);
+    }
+
+    public String url (String matchId) {
+        return String.format("http://127.0.0.1:%d/results/%s", server.getAddress().getPort(), matchId);
+    }
+
+    private void page (HttpExchange ex) throws IOException {
+
+        requests.incrementAndGet();
+
+        String matchId = ex.getRequestURI().getPath().substring("/results/".length());
+
+        StringBuilder html = new StringBuilder(4096);
+
+        html.append("<!DOCTYPE html><html><head><title>Results</title></head><body>\n");
+
+        html.append("<select id=\"divisionLevel\"><option value=\"0\">Overall</option>");
+        for (int div = 0; div < StageFixtures.DIVISIONS.length; div++) {
+            html.append(String.format("<option value=\"%d\">%s</option>", div + 1, StageFixtures.DIVISIONS[div]));
+        }
+        html.append("</select>\n");
+
+        html.append("<select id=\"resultLevel\"><option value=\"0\">Match Results</option>");
+        for (int stage = 1; stage <= stages; stage++) {
+            html.append(String.format("<option value=\"%d\">Stage %d</option>", stage, stage));
+        }
+        html.append("</select>\n");
+
+        html.append("<div id=\"results\"></div>\n<script>\n");
+        html.append(String.format(Locale.ROOT, "const match = '%s', latency = %d, failureRate = %f, seed = %d;%n",
+                                  matchId, renderLatency, failureRate, matchId.hashCode()));
+        html.append(String.format("const divisions = ['Overall', '%s'];%n", String.join("', '", StageFixtures.DIVISIONS)));
+        html.append(String.format("const fields = ['%s'];%n", String.join("', '", RECORD_FIELDS)));
+        html.append(
+            /* Seeded, so failures land in the same places every run */
+            "let state = seed >>> 0;\n" +
+            "function random() {\n" +
+            "  state = (state + 0x6D2B79F5) >>> 0;\n" +
+            "  let t = Math.imul(state ^ (state >>> 15), 1 | state);\n" +
+            "  t = (t + Math.imul(t ^ (t >>> 7), 61 | t)) ^ t;\n" +
+            "  return ((t ^ (t >>> 14)) >>> 0) / 4294967296;\n" +
+            "}\n" +
+            "let payload = null, generation = 0;\n" +
+            "function records(stage, div) {\n" +
+            "  const entry = payload[stage];\n" +
+            "  if (stage === 0) return entry.Overall.filter(r => div === 0 || r.division === divisions[div]);\n" +
+            "  const names = div === 0 ? divisions.slice(1) : [divisions[div]];\n" +
+            "  const out = [];\n" +
+            "  for (const name of names) for (const r of (entry[name] || [])) out.push(Object.assign({division: name}, r));\n" +
+            "  return out.sort((a, b) => a.place - b.place);\n" +
+            "}\n" +
+            "function render() {\n" +
+            "  const gen = ++generation;\n" +
+            "  const results = document.getElementById('results');\n" +
+            "  results.innerHTML = '';\n" +
+            "  if (payload === null) return;\n" +
+            "  const div = Number(document.getElementById('divisionLevel').value);\n" +
+            "  const stage = Number(document.getElementById('resultLevel').value);\n" +
+            "  const fail = random() < failureRate;\n" +
+            "  setTimeout(() => {\n" +
+            "    if (gen !== generation || fail) return;\n" +
+            "    const table = document.createElement('table');\n" +
+            "    table.id = 'mainResultsTable';\n" +
+            "    const head = table.insertRow();\n" +
+            "    for (const f of fields) { const th = document.createElement('th'); th.textContent = f; head.appendChild(th); }\n" +
+            "    for (const r of records(stage, div)) { const tr = table.insertRow(); for (const f of fields) tr.insertCell().textContent = r[f]; }\n" +
+            "    results.appendChild(table);\n" +
+            "  }, latency);\n" +
+            "}\n" +
+            "document.getElementById('divisionLevel').addEventListener('change', render);\n" +
+            "document.getElementById('resultLevel').addEventListener('change', render);\n" +
+            "fetch('/api/' + match + '/results.json').then(r => r.json()).then(p => { payload = p; render(); });\n");
+        html.append("</script></body></html>\n");
+
+        send(ex, 200, "text/html", html.toString());
+    }
+
+    private void api (HttpExchange ex) throws IOException {
+
+        requests.incrementAndGet();
+
+        String[] path = ex.getRequestURI().getPath().split("/");
+
+        if (path.length != 4 || !path[3].equals("results.json")) {
+            send(ex, 404, "text/plain", "not found");
+            return;
+        }
+
+        send(ex, 200, "application/json", cache.computeIfAbsent(path[2], this::payloadJson));
+    }
+
+    /**
+     * Every stage of a match, the match level entry first. Stages list their
+     * records per division, the match level entry lists them all under
+     * "Overall" with a division field.
+     */
+    private String payloadJson (String matchId) {
+
+        StringBuilder json = new StringBuilder((stages + 1) * shooters * 256);
+
+        json.append('[');
+
+        for (int stage = 0; stage <= stages; stage++) {
+
+            String[][] table = StageFixtures.table(shooters, matchId.hashCode() * 31L + stage);
+
+            json.append(stage == 0 ? "\n{" : ",\n{");
+            json.append(String.format("\"name\": \"%s\"", stage == 0 ? "Match" : "Stage " + stage));
+
+            if (stage == 0) {
+                json.append(", \"Overall\": [");
+                appendRecords(json, table, null);
+                json.append(']');
+            } else {
+                for (String division : StageFixtures.DIVISIONS) {
+                    json.append(String.format(", \"%s\": [", division));
+                    appendRecords(json, table, division);
+                    json.append(']');
+                }
+            }
+
+            json.append('}');
+        }
+
+        json.append("\n]");
+
+        return json.toString();
+    }
+
+    /* One division's records, or everyone's with their division when division is null */
+    private static void appendRecords (StringBuilder json, String[][] table, String division) {
+
+        boolean first = true;
+
+        for (int rowIdx = 1; rowIdx < table.length; rowIdx++) {
+
+            String[] cells = table[rowIdx];
+
+            if (division != null && !cells[DIV_CELL].equals(division)) {
+                continue;
+            }
+
+            json.append(first ? "{" : ",{");
+            first = false;
+
+            boolean firstField = true;
+
+            for (int cell = 0; cell < cells.length; cell++) {
+
+                if (division != null && cell == DIV_CELL) {
+                    continue;
+                }
+
+                json.append(firstField ? "\"" : ",\"").append(RECORD_FIELDS[cell]).append("\":\"").append(cells[cell]).append('"');
+                firstField = false;
+            }
+
+            json.append('}');
+        }
+    }
+
+    private static void send (HttpExchange ex, int status, String type, String body) throws IOException {
+
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+
+        ex.getResponseHeaders().set("Content-Type", type + "; charset=utf-8");
+        ex.sendResponseHeaders(status, bytes.length);
+
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package pscraper;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ *
+ * @author Asmod
+ * 
+ * @brief Writing one stage's validated rows through each output path.
+ * 
+ *        legacyWriteMetricData is the String.concat / String.format /
+ *        unbuffered FileWriter path the row writers replaced.
+ *        asyncCsvRowWriter hands the rows to an AsyncRowWriter and syncs,
+ *        as a journaled scrape does at the end of each stage.
+ *        gzipCsvRowWriter compresses on the ParallelGzipOutputStream pool,
+ *        committing (and so closing a gzip member) once per stage.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class WriteBenchmark {
+
+    @Param({"50", "300", "2000"})
+    public int shooters;
+
+    private double[][] rows;
+
+    private File csvFile;
+    private File colFile;
+    private File legacyFile;
+    private File asyncFile;
+    private File gzipFile;
+
+    private CsvRowWriter          csv;
+    private ColumnarDatasetWriter columnar;
+    private FileWriter            legacy;
+    private CsvRowWriter          asyncCsv;
+    private AsyncRowWriter        ring;
+    private CsvRowWriter          gzipCsv;
+
+    @Setup(Level.Trial)
+    public void setup () throws IOException {
+
+        rows = StageFixtures.metricRows(shooters);
+
+        csvFile    = File.createTempFile("write-bench", ".csv");
+        colFile    = File.createTempFile("write-bench", ".pscol");
+        legacyFile = File.createTempFile("write-bench-legacy", ".csv");
+        asyncFile  = File.createTempFile("write-bench-async", ".csv");
+        gzipFile   = File.createTempFile("write-bench", ".csv.gz");
+    }
+
+    @Setup(Level.Iteration)
+    public void open () throws IOException {
+
+        csv      = new CsvRowWriter(csvFile, false);
+        columnar = new ColumnarDatasetWriter(colFile, false);
+        legacy   = new FileWriter(legacyFile);
+        asyncCsv = new CsvRowWriter(asyncFile, false);
+        ring     = new AsyncRowWriter(4096, RowSink.COLUMNS.length, new ScrapeMetrics());
+        gzipCsv  = new CsvRowWriter(gzipFile, false, true);
+    }
+
+    @TearDown(Level.Iteration)
+    public void close () throws IOException {
+
+        csv.close();
+        columnar.close();
+        legacy.close();
+        ring.close();
+        asyncCsv.close();
+        gzipCsv.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown () {
+
+        csvFile.delete();
+        colFile.delete();
+        legacyFile.delete();
+        asyncFile.delete();
+        gzipFile.delete();
+    }
+
+    @Benchmark
+    public void csvRowWriter () throws IOException {
+        for (double[] row : rows) {
+            csv.writeRow(row, row.length);
+        }
+    }
+
+    @Benchmark
+    public void columnarWriter () throws IOException {
+        for (double[] row : rows) {
+            columnar.writeRow(row, row.length);
+        }
+    }
+
+    @Benchmark
+    public void asyncCsvRowWriter () throws IOException {
+
+        for (double[] row : rows) {
+            ring.write(asyncCsv, row, row.length, null);
+        }
+
+        ring.sync();
+    }
+
+    @Benchmark
+    public long gzipCsvRowWriter () throws IOException {
+
+        for (double[] row : rows) {
+            gzipCsv.writeRow(row, row.length);
+        }
+
+        return gzipCsv.commit();
+    }
+
+    @Benchmark
+    public void legacyWriteMetricData () throws IOException {
+
+        for (double[] row : rows) {
+
+            String outpString = "";
+
+            for (double metric : row) {
+                outpString = outpString.concat(String.format("%f,", metric));
+            }
+
+            outpString = outpString.substring(0, outpString.length() - 1) + "\n";
+
+            legacy.write(outpString);
+        }
+    }
+}
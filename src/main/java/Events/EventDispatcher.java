@@ -0,0 +1,254 @@
+package Events;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import Handlers.LifecycleHandler;
+import Handlers.ProgressHandler;
+import Handlers.StateHandler;
+
+/**
+ *
+ * @author Asmod
+ * 
+ * @brief Hands scraper events to handlers off the scraping thread.
+ * 
+ *        Publishing never blocks. Progress is coalesced to the latest value,
+ *        as are transient state updates. Other state messages go through a
+ *        bounded queue that drops its oldest entry when full. Every state
+ *        message is numbered as it's published, so the latest transient one
+ *        goes out in its place among the queued ones, never after a newer
+ *        one. Lifecycle events are never dropped, and are delivered after
+ *        everything published before them.
+ * 
+ *        Handlers run on the dispatcher's own thread, or on the executor
+ *        they were registered with (e.g. EventQueue::invokeLater for Swing).
+ *        The thread only starts with start(), so an owner that never runs
+ *        doesn't leave one behind. Events published before then wait for it.
+ */
+public class EventDispatcher implements AutoCloseable {
+
+    public static final int DEFAULT_CAPACITY = 256;
+
+    /* A handler and where to run it. A null executor means the dispatch thread. */
+    private static class Registration<H> {
+
+        final H        handler;
+        final Executor executor;
+
+        Registration(H handler, Executor executor) {
+            this.handler  = handler;
+            this.executor = executor;
+        }
+    }
+
+    /* A state message and the order it was published in */
+    private static class Sequenced {
+
+        final long     seq;
+        final StateEvt evt;
+
+        Sequenced(long seq, StateEvt evt) {
+            this.seq = seq;
+            this.evt = evt;
+        }
+    }
+
+    private static final Logger LOG = Logger.getLogger(EventDispatcher.class.getName());
+
+    private final List<Registration<ProgressHandler>>  progressHandlers  = new CopyOnWriteArrayList<>();
+    private final List<Registration<StateHandler>>     stateHandlers     = new CopyOnWriteArrayList<>();
+    private final List<Registration<LifecycleHandler>> lifecycleHandlers = new CopyOnWriteArrayList<>();
+
+    private final ArrayBlockingQueue<Sequenced>       states;
+    private final AtomicReference<Sequenced>          latestState    = new AtomicReference<>();
+    private final AtomicInteger                       latestProgress = new AtomicInteger(-1);
+    private final ConcurrentLinkedQueue<LifecycleEvt> lifecycle      = new ConcurrentLinkedQueue<>();
+
+    private final AtomicLong dropped  = new AtomicLong();
+    private final AtomicLong stateSeq = new AtomicLong();
+
+    private final Thread thread;
+
+    private volatile boolean closed = false;
+
+    public EventDispatcher () {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public EventDispatcher (int capacity) {
+
+        states = new ArrayBlockingQueue<>(capacity);
+
+        thread = new Thread(this::dispatchLoop, "scraper-events");
+        thread.setDaemon(true);
+    }
+
+    /* Starts delivering, once. Does nothing after close(). */
+    public synchronized void start () {
+
+        if (!closed && thread.getState() == Thread.State.NEW) {
+            thread.start();
+        }
+    }
+
+    public void addProgressHandler (ProgressHandler handler, Executor executor) {
+        progressHandlers.add(new Registration<>(handler, executor));
+    }
+
+    public void addStateHandler (StateHandler handler, Executor executor) {
+        stateHandlers.add(new Registration<>(handler, executor));
+    }
+
+    public void addLifecycleHandler (LifecycleHandler handler, Executor executor) {
+        lifecycleHandlers.add(new Registration<>(handler, executor));
+    }
+
+    public void publishProgress (int progress) {
+
+        latestProgress.set(progress);
+        wake();
+    }
+
+    public void publishState (StateEvt evt) {
+
+        Sequenced entry = new Sequenced(stateSeq.incrementAndGet(), evt);
+
+        if (evt.transientState) {
+            latestState.set(entry);
+        } else {
+            /* Make room by dropping the oldest, the scraper never waits on us */
+            while (!states.offer(entry)) {
+                if (states.poll() != null) {
+                    dropped.incrementAndGet();
+                }
+            }
+        }
+
+        wake();
+    }
+
+    public void publishLifecycle (LifecycleEvt evt) {
+
+        lifecycle.add(evt);
+        wake();
+    }
+
+    /* State messages thrown away because the queue was full */
+    public long getDroppedStates () {
+        return dropped.get();
+    }
+
+    /**
+     * Delivers whatever is pending, then stops the dispatch thread. Events
+     * handed to other executors may still be queued there.
+     */
+    @Override
+    public void close () {
+
+        synchronized (this) {
+            closed = true;
+        }
+
+        wake();
+
+        if (Thread.currentThread() != thread) {
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void wake () {
+        LockSupport.unpark(thread);
+    }
+
+    private boolean pending () {
+        return !states.isEmpty() || latestState.get() != null || latestProgress.get() >= 0 || !lifecycle.isEmpty();
+    }
+
+    private void dispatchLoop () {
+
+        while (!closed || pending()) {
+
+            dispatchPending();
+
+            if (!closed && !pending()) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(100));
+            }
+        }
+    }
+
+    private void dispatchPending () {
+
+        /* Taken first, so anything queued after it is newer and goes out after it */
+        Sequenced latest = latestState.getAndSet(null);
+        Sequenced queued;
+
+        while ((queued = states.poll()) != null) {
+
+            if (latest != null && latest.seq < queued.seq) {
+                deliverState(latest.evt);
+                latest = null;
+            }
+
+            deliverState(queued.evt);
+        }
+
+        if (latest != null) {
+            deliverState(latest.evt);
+        }
+
+        int progress = latestProgress.getAndSet(-1);
+        if (progress >= 0) {
+            ProgressEvt evt = new ProgressEvt(progress);
+            for (Registration<ProgressHandler> reg : progressHandlers) {
+                run(reg.executor, () -> reg.handler.handleProgressEvt(evt));
+            }
+        }
+
+        /* Lifecycle waits until everything ahead of it is out */
+        if (states.isEmpty() && latestState.get() == null) {
+            LifecycleEvt evt;
+            while ((evt = lifecycle.poll()) != null) {
+                final LifecycleEvt lEvt = evt;
+                for (Registration<LifecycleHandler> reg : lifecycleHandlers) {
+                    run(reg.executor, () -> reg.handler.handleLifecycleEvt(lEvt));
+                }
+            }
+        }
+    }
+
+    private void deliverState (StateEvt evt) {
+        for (Registration<StateHandler> reg : stateHandlers) {
+            run(reg.executor, () -> reg.handler.handleStateEvt(evt));
+        }
+    }
+
+    private void run (Executor executor, Runnable task) {
+
+        if (executor != null) {
+            executor.execute(task);
+            return;
+        }
+
+        /* A broken handler shouldn't take the dispatcher down with it */
+        try {
+            task.run();
+        } catch (RuntimeException e) {
+            LOG.log(Level.WARNING, "Event handler failed", e);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package Events;
+
+public class LifecycleEvt {
+
+    public enum Kind { COMPLETE, ABORTED }
+
+    public final Kind   kind;
+    public final String message;
+
+    public LifecycleEvt(Kind kind, String message) {
+
+        this.kind    = kind;
+        this.message = message;
+    }
+
+}
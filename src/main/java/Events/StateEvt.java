@@ -2,11 +2,34 @@ package Events;
 
 public class StateEvt {
 
-    public String stateText = "";
+    /* Status chatter that only matters until the next update, safe to coalesce */
+    public final boolean transientState;
+
+    private final String   format;
+    private final Object[] args;
+
+    private String stateText = null;
 
     public StateEvt(String msg) {
         
-        this.stateText = msg;
+        this(false, msg);
+    }
+
+    /* Formatting is put off until a handler actually reads the text */
+    public StateEvt(boolean transientState, String format, Object... args) {
+
+        this.transientState = transientState;
+        this.format         = format;
+        this.args           = args;
+    }
+
+    public String getStateText() {
+
+        if (stateText == null) {
+            stateText = (args.length == 0) ? format : String.format(format, args);
+        }
+
+        return stateText;
     }
 
 }
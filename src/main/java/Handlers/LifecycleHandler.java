@@ -0,0 +1,8 @@
+package Handlers;
+
+import Events.LifecycleEvt;
+
+public interface LifecycleHandler {
+
+    abstract void handleLifecycleEvt(LifecycleEvt evt);
+}
@@ -0,0 +1,294 @@
+package pscraper;
+
+import java.io.IOException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import pscraper.ScrapeMetrics.Phase;
+
+/**
+ *
+ * @author Asmod
+ *
+ * @brief Moves row output off the scraping thread.
+ *
+ *        Validated rows are copied into a fixed ring of preallocated slots,
+ *        each holding the row, the sink it's for and its division. One writer
+ *        thread takes every slot waiting at once as a batch and writes them
+ *        out in order, without holding the lock. A full ring blocks the
+ *        scraper until the writer catches up, so memory stays bounded.
+ *
+ *        A row is acknowledged once write() returns, and every acknowledged
+ *        row reaches its sink before sync() or close() return. Sinks must
+ *        only be committed, closed or otherwise touched by the scraper after
+ *        a sync(), at which point the writer is idle. If a sink fails, the
+ *        writer drops what's left and the next write() or sync() throws.
+ *
+ *        Queue depth goes to ScrapeMetrics as rows come and go. Each batch's
+ *        drain time is recorded under Phase.DRAIN and time spent blocked on
+ *        a full ring under Phase.WRITE_WAIT.
+ */
+public class AsyncRowWriter {
+
+    private final int capacity;
+    private final int width;
+
+    /* Slots, indexed by sequence % capacity */
+    private final double[]  values;
+    private final int[]     lengths;
+    private final RowSink[] sinks;
+    private final String[]  divisions;
+
+    private final ScrapeMetrics metrics;
+
+    private final ReentrantLock lock     = new ReentrantLock();
+    private final Condition     notEmpty = lock.newCondition();
+    private final Condition     notFull  = lock.newCondition();
+    private final Condition     drained  = lock.newCondition();
+
+    /* Guarded by lock. Slots from head up to tail are waiting or being written. */
+    private long        head    = 0;
+    private long        tail    = 0;
+    private boolean     closed  = false;
+    private IOException failure = null;
+
+    /* Also guarded by lock, for the report */
+    private long batches   = 0;
+    private long written   = 0;
+    private int  maxBatch  = 0;
+    private int  maxDepth  = 0;
+    private long stalls    = 0;
+
+    private final Thread writer;
+
+    public AsyncRowWriter (int capacity, int width, ScrapeMetrics metrics) {
+
+        this.capacity  = Math.max(1, capacity);
+        this.width     = width;
+        this.metrics   = metrics;
+        this.values    = new double[this.capacity * width];
+        this.lengths   = new int[this.capacity];
+        this.sinks     = new RowSink[this.capacity];
+        this.divisions = new String[this.capacity];
+
+        writer = new Thread(this::drain, "row-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Queues a copy of row for sink, blocking while the ring is full.
+     * Throws if an earlier row failed to write or the writer is closed.
+     */
+    public void write (RowSink sink, double[] row, int len, String division) throws IOException {
+
+        if (len > width) {
+            throw new IOException(String.format("Row has %d values, slots hold %d.", len, width));
+        }
+
+        lock.lock();
+
+        try {
+            if (tail - head == capacity) {
+
+                long started = metrics.start();
+
+                stalls++;
+
+                while (tail - head == capacity && failure == null && !closed) {
+                    notFull.awaitUninterruptibly();
+                }
+
+                metrics.stop(Phase.WRITE_WAIT, started);
+            }
+
+            check();
+
+            int slot = (int) (tail % capacity);
+
+            System.arraycopy(row, 0, values, slot * width, len);
+
+            lengths[slot]   = len;
+            sinks[slot]     = sink;
+            divisions[slot] = division;
+
+            tail++;
+
+            int depth = (int) (tail - head);
+
+            maxDepth = Math.max(maxDepth, depth);
+            metrics.writeQueueDepth(depth);
+
+            notEmpty.signal();
+
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /* Waits until every row queued so far is in its sink */
+    public void sync () throws IOException {
+
+        lock.lock();
+
+        try {
+            while (tail != head && failure == null) {
+                drained.awaitUninterruptibly();
+            }
+
+            if (failure != null) {
+                throw failure;
+            }
+
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes out whatever is still queued and stops the writer thread. The
+     * sinks are left open, they belong to whoever handed them over.
+     */
+    public void close () throws IOException {
+
+        lock.lock();
+
+        try {
+            closed = true;
+            notEmpty.signal();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        boolean interrupted = false;
+
+        while (writer.isAlive()) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    public int depth () {
+
+        lock.lock();
+
+        try {
+            return (int) (tail - head);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public String report () {
+
+        lock.lock();
+
+        try {
+            return String.format("Row writer: %d row(s) in %d batch(es), largest batch %d, "
+                               + "deepest queue %d of %d, %d stall(s) on a full queue.",
+                                 written, batches, maxBatch, maxDepth, capacity, stalls);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void check () throws IOException {
+
+        if (failure != null) {
+            throw failure;
+        }
+
+        if (closed) {
+            throw new IOException("Row writer is closed.");
+        }
+    }
+
+    private void drain () {
+
+        double[] row = new double[width];
+
+        while (true) {
+
+            long from;
+            long to;
+
+            lock.lock();
+
+            try {
+                while (tail == head && !closed) {
+                    notEmpty.awaitUninterruptibly();
+                }
+
+                if (tail == head) {
+                    return;
+                }
+
+                from = head;
+                to   = tail;
+
+            } finally {
+                lock.unlock();
+            }
+
+            long started = metrics.start();
+
+            IOException error = null;
+            int         done  = 0;
+
+            /* These slots stay ours until head moves past them */
+            for (long seq = from; seq < to && error == null && failure == null; seq++) {
+
+                int slot = (int) (seq % capacity);
+
+                System.arraycopy(values, slot * width, row, 0, lengths[slot]);
+
+                try {
+                    sinks[slot].writeRow(row, lengths[slot], divisions[slot]);
+                    done++;
+                } catch (IOException | RuntimeException e) {
+                    error = (e instanceof IOException) ? (IOException) e : new IOException(e);
+                }
+            }
+
+            metrics.stop(Phase.DRAIN, started);
+
+            lock.lock();
+
+            try {
+                if (error != null && failure == null) {
+                    failure = error;
+                }
+
+                for (long seq = from; seq < to; seq++) {
+                    sinks[(int) (seq % capacity)] = null;
+                }
+
+                batches++;
+                written  += done;
+                maxBatch  = Math.max(maxBatch, (int) (to - from));
+
+                head = to;
+
+                metrics.writeQueueDepth((int) (tail - head));
+
+                notFull.signalAll();
+                drained.signalAll();
+
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package pscraper;
+
+import com.microsoft.playwright.Browser;
+import com.microsoft.playwright.BrowserContext;
+import com.microsoft.playwright.BrowserType;
+import com.microsoft.playwright.Playwright;
+
+/**
+ *
+ * @author Asmod
+ * 
+ * @brief Owns the Playwright runtime and browser for a whole scraping run.
+ * 
+ *        The driver and browser are started once, on first use, and each
+ *        match gets its own throwaway BrowserContext. Closing the session
+ *        tears everything down, and is safe to call more than once.
+ */
+public class BrowserSession implements AutoCloseable {
+
+    private final boolean headless;
+
+    private Playwright pWright;
+    private Browser    browser;
+
+    private long launchMillis   = 0;
+    private int  contextsOpened = 0;
+
+    public BrowserSession (boolean headless) {
+        this.headless = headless;
+    }
+
+    /**
+     * Hands out a fresh context, launching the runtime and browser on the
+     * first call, or again if the browser has gone away since.
+     */
+    public synchronized BrowserContext newContext () {
+
+        if (browser != null && !browser.isConnected()) {
+            close();
+        }
+
+        if (browser == null) {
+            launch();
+        }
+
+        contextsOpened++;
+
+        return browser.newContext();
+    }
+
+    public synchronized boolean isOpen () {
+        return browser != null && browser.isConnected();
+    }
+
+    /**
+     * Summarises what the shared runtime bought us. Every context after the
+     * first would otherwise have paid for its own driver and browser start.
+     */
+    public synchronized String report () {
+
+        long saved = launchMillis * Math.max(0, contextsOpened - 1);
+
+        return String.format("Browser started once in %d ms for %d match(es), ~%d ms of startup saved.",
+                             launchMillis, contextsOpened, saved);
+    }
+
+    @Override
+    public synchronized void close () {
+
+        if (browser != null) {
+            try {
+                browser.close();
+            } catch (Exception e) {}
+            browser = null;
+        }
+
+        if (pWright != null) {
+            try {
+                pWright.close();
+            } catch (Exception e) {}
+            pWright = null;
+        }
+    }
+
+    private void launch () {
+
+        long start = System.nanoTime();
+
+        pWright = Playwright.create();
+
+        /* Don't leave the driver running behind a browser that never started */
+        try {
+            browser = pWright.firefox().launch(new BrowserType.LaunchOptions().setHeadless(headless));
+        } catch (RuntimeException e) {
+            close();
+            throw e;
+        }
+
+        launchMillis = (System.nanoTime() - start) / 1000000;
+    }
+}
@@ -0,0 +1,151 @@
+package pscraper;
+
+/**
+ *
+ * @author Asmod
+ *
+ * @brief Pauses every scraper sharing it once the site looks degraded.
+ *
+ *        Outcomes of page loads go into a window of the last few. When
+ *        enough of them are in and the share that failed reaches the trip
+ *        ratio, the breaker opens and await() holds every caller for the
+ *        cool-down. After that it is half open: callers go through, and the
+ *        next outcome decides. A success closes it and clears the window, a
+ *        failure opens it again with twice the cool-down, up to a cap.
+ *
+ *        All methods are synchronized, one breaker is meant to be shared by
+ *        every worker of a MatchScheduler.
+ */
+public class CircuitBreaker {
+
+    private enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final boolean[] window;
+    private final int       minOutcomes;
+    private final double    tripRatio;
+    private final long      baseCooldown;
+    private final long      maxCooldown;
+
+    private State state      = State.CLOSED;
+    private int   next       = 0;
+    private int   outcomes   = 0;
+    private int   failures   = 0;
+    private long  cooldown;
+    private long  openUntil  = 0;
+
+    private int  trips       = 0;
+    private long pausedNanos = 0;
+
+    public CircuitBreaker (int window, int minOutcomes, double tripRatio, long cooldownMillis, long maxCooldownMillis) {
+
+        this.window       = new boolean[Math.max(1, window)];
+        this.minOutcomes  = Math.max(1, Math.min(this.window.length, minOutcomes));
+        this.tripRatio    = tripRatio;
+        this.baseCooldown = Math.max(0, cooldownMillis);
+        this.maxCooldown  = Math.max(this.baseCooldown, maxCooldownMillis);
+        this.cooldown     = this.baseCooldown;
+    }
+
+    /* Trips when 6 of the last 10 or more loads failed, pausing a minute at first and up to ten */
+    public CircuitBreaker () {
+        this(20, 10, 0.6, 60000, 600000);
+    }
+
+    public synchronized void success () {
+
+        if (state == State.HALF_OPEN) {
+            state    = State.CLOSED;
+            cooldown = baseCooldown;
+            clear();
+            return;
+        }
+
+        record(false);
+    }
+
+    public synchronized void failure () {
+
+        if (state == State.HALF_OPEN) {
+            cooldown = Math.min(maxCooldown, cooldown * 2);
+            open();
+            return;
+        }
+
+        record(true);
+
+        if (state == State.CLOSED && outcomes >= minOutcomes && failures >= tripRatio * outcomes) {
+            open();
+        }
+    }
+
+    /**
+     * Blocks while the breaker is open. Returns how many milliseconds were
+     * spent waiting, 0 if it was closed.
+     */
+    public synchronized long await () throws InterruptedException {
+
+        long started = System.nanoTime();
+
+        while (state == State.OPEN) {
+
+            long left = openUntil - System.currentTimeMillis();
+
+            if (left <= 0) {
+                state = State.HALF_OPEN;
+                notifyAll();
+                break;
+            }
+
+            wait(left);
+        }
+
+        long waited = System.nanoTime() - started;
+
+        pausedNanos += waited;
+
+        return waited / 1000000;
+    }
+
+    public synchronized boolean isOpen () {
+        return state == State.OPEN;
+    }
+
+    /* Milliseconds until an open breaker lets callers through again */
+    public synchronized long remainingMillis () {
+        return (state == State.OPEN) ? Math.max(0, openUntil - System.currentTimeMillis()) : 0;
+    }
+
+    public synchronized String report () {
+        return String.format("Circuit breaker: tripped %d time(s), scrapers paused %.1f s in total.",
+                             trips, pausedNanos / 1e9);
+    }
+
+    private void open () {
+
+        state     = State.OPEN;
+        openUntil = System.currentTimeMillis() + cooldown;
+
+        trips++;
+
+        clear();
+    }
+
+    private void record (boolean failed) {
+
+        if (outcomes == window.length) {
+            failures -= window[next] ? 1 : 0;
+        } else {
+            outcomes++;
+        }
+
+        window[next] = failed;
+        failures    += failed ? 1 : 0;
+        next         = (next + 1) % window.length;
+    }
+
+    private void clear () {
+        next     = 0;
+        outcomes = 0;
+        failures = 0;
+    }
+}
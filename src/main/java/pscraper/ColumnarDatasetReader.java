@@ -0,0 +1,167 @@
+package pscraper;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ *
+ * @author Asmod
+ * 
+ * @brief Memory mapped reader for datasets written by ColumnarDatasetWriter.
+ * 
+ *        Only the header is decoded. Each column comes back as a DoubleBuffer
+ *        view straight onto the mapped file, so nothing is parsed or copied.
+ *        The views stay valid after close, until the mapping is collected.
+ */
+public class ColumnarDatasetReader implements Closeable {
+
+    private final RandomAccessFile raf;
+    private final MappedByteBuffer map;
+
+    private final String[] columnNames;
+    private final long     rowCount;
+    private final int      dataStart;
+
+    public ColumnarDatasetReader (File file) throws IOException {
+
+        raf = new RandomAccessFile(file, "r");
+
+        try {
+            map = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+            map.order(ByteOrder.LITTLE_ENDIAN);
+
+            byte[] magic = new byte[ColumnarDatasetWriter.MAGIC.length];
+            map.get(magic);
+
+            if (!Arrays.equals(magic, ColumnarDatasetWriter.MAGIC)) {
+                throw new IOException(String.format("%s is not a columnar dataset.", file.getName()));
+            }
+
+            int columns = map.getInt();
+            rowCount    = map.getLong();
+            dataStart   = map.getInt();
+
+            columnNames = new String[columns];
+
+            for (int col = 0; col < columns; col++) {
+                byte[] name = new byte[map.getShort()];
+                map.get(name);
+                columnNames[col] = new String(name, StandardCharsets.UTF_8);
+            }
+
+            if (dataStart + rowCount * columns * 8 > raf.length()) {
+                throw new IOException(String.format("%s is truncated.", file.getName()));
+            }
+
+        } catch (IOException | RuntimeException e) {
+            raf.close();
+            throw e;
+        }
+    }
+
+    public String[] getColumnNames () {
+        return columnNames.clone();
+    }
+
+    public long getRowCount () {
+        return rowCount;
+    }
+
+    public DoubleBuffer column (int idx) {
+
+        if (idx < 0 || idx >= columnNames.length) {
+            throw new IndexOutOfBoundsException(String.format("No column %d", idx));
+        }
+
+        ByteBuffer view = map.duplicate();
+
+        view.position((int) (dataStart + idx * rowCount * 8));
+        view.limit((int) (dataStart + (idx + 1) * rowCount * 8));
+
+        return view.slice().order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+    }
+
+    public DoubleBuffer column (String name) {
+
+        for (int idx = 0; idx < columnNames.length; idx++) {
+            if (columnNames[idx].equals(name)) {
+                return column(idx);
+            }
+        }
+
+        throw new IllegalArgumentException(String.format("No column named %s", name));
+    }
+
+    @Override
+    public void close () throws IOException {
+        raf.close();
+    }
+
+    /**
+     * Migrates a scraper CSV to the columnar format. Rows that don't parse
+     * are skipped, and the number of rows written is returned.
+     */
+    public static long convertCsv (File csv, File out) throws IOException {
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(csv));
+             ColumnarDatasetWriter writer = new ColumnarDatasetWriter(out, false)) {
+
+            String line = reader.readLine();
+
+            if (line == null || !line.equals(CsvRowWriter.HEADER)) {
+                throw new IOException(String.format("%s does not have the scraper header.", csv.getName()));
+            }
+
+            double[] row = new double[RowSink.COLUMNS.length];
+
+            while ((line = reader.readLine()) != null) {
+
+                String[] cells = line.split(",");
+
+                if (cells.length != row.length) {
+                    continue;
+                }
+
+                try {
+                    for (int idx = 0; idx < row.length; idx++) {
+                        row[idx] = Double.parseDouble(cells[idx]);
+                    }
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+
+                writer.writeRow(row, row.length);
+            }
+
+            return writer.getRowsWritten();
+        }
+    }
+
+    /**
+     * @param args scraper CSVs to convert, each written alongside with a
+     *             .pscol extension
+     */
+    public static void main (String[] args) throws IOException {
+
+        for (String arg : args) {
+
+            File csv = new File(arg);
+            File out = new File(arg.replaceAll("\\.csv$", "") + OutputFormat.COLUMNAR.extension);
+
+            long rows = convertCsv(csv, out);
+
+            System.out.println(String.format("%s -> %s (%d rows)", csv.getPath(), out.getPath(), rows));
+        }
+    }
+}
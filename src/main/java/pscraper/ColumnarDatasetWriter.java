@@ -0,0 +1,303 @@
+package pscraper;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ *
+ * @author Asmod
+ * 
+ * @brief Writes metric rows as a columnar binary dataset.
+ * 
+ *        File layout (all little-endian):
+ * 
+ *          magic      8 bytes, "PSCOLS01"
+ *          columns    int32
+ *          rows       int64
+ *          dataStart  int32, offset of the first column, 8 byte aligned
+ *          names      per column, int16 length then UTF-8 bytes
+ *          padding    zeros up to dataStart
+ *          data       per column, rows float64 values back to back
+ * 
+ *        Rows stream into a row-major spill file next to the output, <file>.spill.
+ *        On close the spill is transposed into the final file and removed, so
+ *        memory stays flat however many rows are written.
+ *
+ *        The spill is the part that can be resumed. Its rows are fixed size
+ *        and only ever appended, so commit() syncs it and returns its length,
+ *        and cutting it back to any committed length leaves whole rows.
+ *        suspend() closes it without building the dataset. A writer opened
+ *        with resume then carries on from whatever rows it holds. The journal
+ *        tracks the spill rather than the dataset for this reason.
+ */
+public class ColumnarDatasetWriter implements RowSink {
+
+    public static final byte[] MAGIC = "PSCOLS01".getBytes(StandardCharsets.US_ASCII);
+
+    private final File     file;
+    private final File     spill;
+    private final String[] columns;
+
+    private FileOutputStream spillFile;
+    private DataOutputStream spillOut;
+
+    private final ByteBuffer rowBytes;
+
+    private long rows = 0;
+
+    /**
+     * Opens a dataset for writing. With resume set, rows in a spill left by
+     * an unfinished writer are kept and added to. Otherwise a leftover spill
+     * is started over. With append set and no spill resumed, rows already
+     * in an existing dataset are carried over, provided its columns match.
+     * That reads and rewrites the whole dataset, so it suits a file that's
+     * opened now and then, not one shared by every match of a run.
+     */
+    public ColumnarDatasetWriter (File file, String[] columns, boolean append, boolean resume) throws IOException {
+
+        this.file     = file;
+        this.columns  = columns.clone();
+        this.spill    = new File(file.getPath() + ".spill");
+        this.rowBytes = ByteBuffer.allocate(columns.length * 8).order(ByteOrder.LITTLE_ENDIAN);
+
+        long spilled = (resume && spill.exists()) ? spill.length() / rowBytes.capacity() : 0;
+
+        /* A torn last row from a crash is dropped along with anything else past the last whole one */
+        if (spilled > 0) {
+            try (RandomAccessFile raf = new RandomAccessFile(spill, "rw")) {
+                raf.setLength(spilled * rowBytes.capacity());
+            }
+        }
+
+        spillFile = new FileOutputStream(spill, spilled > 0);
+        spillOut  = new DataOutputStream(new BufferedOutputStream(spillFile, 64 * 1024));
+
+        rows = spilled;
+
+        if (spilled == 0 && append && file.exists() && file.length() > 0) {
+            carryOver();
+        }
+    }
+
+    public ColumnarDatasetWriter (File file, String[] columns, boolean append) throws IOException {
+        this(file, columns, append, false);
+    }
+
+    public ColumnarDatasetWriter (File file, boolean append, boolean resume) throws IOException {
+        this(file, RowSink.COLUMNS, append, resume);
+    }
+
+    public ColumnarDatasetWriter (File file, boolean append) throws IOException {
+        this(file, RowSink.COLUMNS, append, false);
+    }
+
+    /* Where rows wait until close, and what commit() offsets are lengths of */
+    public File getSpillFile () {
+        return spill;
+    }
+
+    public long getRowsWritten () {
+        return rows;
+    }
+
+    @Override
+    public void writeRow (double[] row, int len) throws IOException {
+
+        if (len != columns.length) {
+            throw new IOException(String.format("Row has %d values, dataset has %d columns.", len, columns.length));
+        }
+
+        rowBytes.clear();
+
+        for (int idx = 0; idx < len; idx++) {
+            rowBytes.putDouble(row[idx]);
+        }
+
+        spillOut.write(rowBytes.array(), 0, rowBytes.position());
+
+        rows++;
+    }
+
+    @Override
+    public void flush () throws IOException {
+        spillOut.flush();
+    }
+
+    /* Rows only reach the dataset when it's transposed on close, until then the spill holds them */
+    @Override
+    public long commit () throws IOException {
+
+        flush();
+
+        spillFile.getFD().sync();
+
+        return rows * rowBytes.capacity();
+    }
+
+    /* Closes the spill and leaves it be, for a writer opened with resume to pick up */
+    @Override
+    public void suspend () throws IOException {
+
+        if (spillOut == null) {
+            return;
+        }
+
+        spillOut.close();
+        spillOut = null;
+    }
+
+    @Override
+    public void close () throws IOException {
+
+        if (spillOut == null) {
+            return;
+        }
+
+        spillOut.close();
+        spillOut = null;
+
+        try {
+            transpose();
+        } finally {
+            spill.delete();
+        }
+    }
+
+    /* Hands every row in the spill so far to visitor, in the order written. The array is reused. */
+    protected void readSpill (Consumer<double[]> visitor) throws IOException {
+
+        flush();
+
+        double[] row = new double[columns.length];
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(spill), 64 * 1024))) {
+
+            ByteBuffer buf = ByteBuffer.allocate(rowBytes.capacity()).order(ByteOrder.LITTLE_ENDIAN);
+
+            for (long r = 0; r < rows; r++) {
+
+                in.readFully(buf.array());
+
+                buf.clear();
+
+                for (int col = 0; col < row.length; col++) {
+                    row[col] = buf.getDouble();
+                }
+
+                visitor.accept(row);
+            }
+        }
+    }
+
+    /* Applied to every value as it's moved into the dataset, subclasses can rescale columns here */
+    protected double transform (int col, double value) {
+        return value;
+    }
+
+    /* Copies the rows of an existing dataset into the spill so they survive the rewrite */
+    private void carryOver () throws IOException {
+
+        try (ColumnarDatasetReader existing = new ColumnarDatasetReader(file)) {
+
+            if (!Arrays.equals(existing.getColumnNames(), columns)) {
+                throw new IOException(String.format("%s has different columns, refusing to append.", file.getName()));
+            }
+
+            DoubleBuffer[] cols = new DoubleBuffer[columns.length];
+            for (int col = 0; col < columns.length; col++) {
+                cols[col] = existing.column(col);
+            }
+
+            double[] row = new double[columns.length];
+
+            for (int r = 0; r < existing.getRowCount(); r++) {
+                for (int col = 0; col < columns.length; col++) {
+                    row[col] = cols[col].get(r);
+                }
+                writeRow(row, row.length);
+            }
+        }
+    }
+
+    private void transpose () throws IOException {
+
+        byte[][] names = new byte[columns.length][];
+        int headerLen  = MAGIC.length + 4 + 8 + 4;
+
+        for (int col = 0; col < columns.length; col++) {
+            names[col] = columns[col].getBytes(StandardCharsets.UTF_8);
+            headerLen += 2 + names[col].length;
+        }
+
+        int dataStart = (headerLen + 7) & ~7;
+
+        ByteBuffer header = ByteBuffer.allocate(dataStart).order(ByteOrder.LITTLE_ENDIAN);
+
+        header.put(MAGIC);
+        header.putInt(columns.length);
+        header.putLong(rows);
+        header.putInt(dataStart);
+
+        for (byte[] name : names) {
+            header.putShort((short) name.length);
+            header.put(name);
+        }
+
+        header.position(0);
+
+        long dataLen = rows * columns.length * 8;
+
+        /* A single mapping tops out at 2 GB, which is far past any one match */
+        if (dataLen > Integer.MAX_VALUE) {
+            throw new IOException(String.format("%s is too large for a single dataset file.", file.getName()));
+        }
+
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw");
+             RandomAccessFile in  = new RandomAccessFile(spill, "r")) {
+
+            out.setLength(0);
+
+            FileChannel outCh = out.getChannel();
+            outCh.write(header, 0);
+
+            if (dataLen == 0) {
+                return;
+            }
+
+            DoubleBuffer src = in.getChannel()
+                                 .map(FileChannel.MapMode.READ_ONLY, 0, dataLen)
+                                 .order(ByteOrder.LITTLE_ENDIAN)
+                                 .asDoubleBuffer();
+
+            MappedByteBuffer dstMap = outCh.map(FileChannel.MapMode.READ_WRITE, dataStart, dataLen);
+
+            DoubleBuffer dst = dstMap.order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+
+            /* Stride down the row-major spill once per column */
+            int width = columns.length;
+
+            for (int col = 0; col < width; col++) {
+                for (long r = 0; r < rows; r++) {
+                    dst.put(transform(col, src.get((int) (r * width + col))));
+                }
+            }
+
+            dstMap.force();
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package pscraper;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+/**
+ *
+ * @author Asmod
+ * 
+ * @brief Buffered CSV writer for metric rows.
+ * 
+ *        Rows come in as primitive doubles and are formatted straight into a
+ *        reusable char buffer, so writing a row allocates nothing. Numbers are
+ *        printed exactly as String.format("%f") would print them. Values the
+ *        fast path can't reproduce exactly fall back to String.format itself.
+ * 
+ *        With gzip set the file is written through a ParallelGzipOutputStream
+ *        instead. Each commit closes a gzip member, so the length it returns
+ *        still cuts the file back to something gunzip reads cleanly, and
+ *        appending to an existing file just adds members to it.
+ */
+public class CsvRowWriter implements RowSink {
+
+    public static final String HEADER = "%psbl,MaxPoints,Points,HF,Time,A,B,C,D,M,NPM,NS,Proc";
+
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    /* %f prints six places, and below this magnitude a six place decimal is unambiguous */
+    private static final double SCALE     = 1e6;
+    private static final double FAST_MAX  = 1e9;
+
+    private final File             file;
+    private final FileOutputStream         fos;
+    private final ParallelGzipOutputStream gzip;
+    private final Writer                   out;
+    private final char[]                   buf;
+
+    private int pos = 0;
+
+    /* Flush after this many rows, 0 means only when the buffer fills or on close */
+    private int flushEveryRows = 0;
+    private int rowsSinceFlush = 0;
+
+    private long rowsWritten = 0;
+
+    /* Only take the fast path if the default locale formats %f the way we do */
+    private final boolean fastPath = String.format("%f", -1.5).equals("-1.500000");
+
+    /**
+     * Opens the file for writing. A new or empty file gets the header. With
+     * append set, an existing file is appended to, but only if its header
+     * matches ours. Without it, an existing file is truncated and restarted.
+     */
+    public CsvRowWriter (File file, boolean append, int bufferSize, boolean gzip) throws IOException {
+
+        boolean hasContent = file.exists() && file.length() > 0;
+
+        if (append && hasContent) {
+            checkHeader(file, gzip);
+        }
+
+        boolean keep = append && hasContent;
+
+        this.file = file;
+        this.fos  = new FileOutputStream(file, keep);
+        this.gzip = gzip ? new ParallelGzipOutputStream(fos) : null;
+        this.out  = new OutputStreamWriter(gzip ? this.gzip : fos, StandardCharsets.UTF_8);
+        this.buf  = new char[Math.max(bufferSize, 64)];
+
+        if (!keep) {
+            append(HEADER);
+            append('\n');
+        }
+    }
+
+    public CsvRowWriter (File file, boolean append, int bufferSize) throws IOException {
+        this(file, append, bufferSize, false);
+    }
+
+    public CsvRowWriter (File file, boolean append) throws IOException {
+        this(file, append, DEFAULT_BUFFER_SIZE, false);
+    }
+
+    public CsvRowWriter (File file, boolean append, boolean gzip) throws IOException {
+        this(file, append, DEFAULT_BUFFER_SIZE, gzip);
+    }
+
+    public void setFlushEveryRows (int rows) {
+        this.flushEveryRows = rows;
+    }
+
+    public long getRowsWritten () {
+        return rowsWritten;
+    }
+
+    /**
+     * Writes the first len values of row as one comma separated line.
+     */
+    @Override
+    public void writeRow (double[] row, int len) throws IOException {
+
+        for (int idx = 0; idx < len; idx++) {
+
+            if (idx > 0) {
+                append(',');
+            }
+
+            appendDouble(row[idx]);
+        }
+
+        append('\n');
+
+        rowsWritten++;
+
+        if (flushEveryRows > 0 && ++rowsSinceFlush >= flushEveryRows) {
+            flush();
+        }
+    }
+
+    @Override
+    public void flush () throws IOException {
+
+        flushBuffer();
+        out.flush();
+
+        rowsSinceFlush = 0;
+    }
+
+    /* Everything written so far goes to disk, and the file length is the offset to resume from */
+    @Override
+    public long commit () throws IOException {
+
+        flush();
+
+        if (gzip != null) {
+            gzip.finishMember();
+        }
+
+        fos.getFD().sync();
+
+        return file.length();
+    }
+
+    @Override
+    public void close () throws IOException {
+
+        try {
+            flushBuffer();
+        } finally {
+            out.close();
+        }
+    }
+
+    private void checkHeader (File file, boolean gzip) throws IOException {
+
+        String first;
+
+        try (InputStream    in     = new FileInputStream(file);
+             BufferedReader reader = new BufferedReader(new InputStreamReader(gzip ? new GZIPInputStream(in) : in,
+                                                                              StandardCharsets.UTF_8))) {
+            first = reader.readLine();
+        }
+
+        if (!HEADER.equals(first)) {
+            throw new IOException(String.format("%s has an unexpected header, refusing to append.", file.getName()));
+        }
+    }
+
+    private void appendDouble (double value) throws IOException {
+
+        /* Six fixed places, matching the %f output when value*1e6 is exactly a whole number */
+        if (fastPath && !Double.isNaN(value) && Math.abs(value) < FAST_MAX) {
+
+            long scaled = Math.round(value * SCALE);
+
+            if (scaled / SCALE == value && (scaled != 0 || Double.doubleToRawLongBits(value) == 0)) {
+
+                if (scaled < 0) {
+                    append('-');
+                    scaled = -scaled;
+                }
+
+                appendLong(scaled / 1000000);
+                append('.');
+
+                /* Zero padded fraction */
+                long frac = scaled % 1000000;
+                for (long div = 100000; div > 0; div /= 10) {
+                    append((char) ('0' + (frac / div) % 10));
+                }
+
+                return;
+            }
+        }
+
+        append(String.format("%f", value));
+    }
+
+    private void appendLong (long value) throws IOException {
+
+        if (value >= 10) {
+            appendLong(value / 10);
+        }
+
+        append((char) ('0' + value % 10));
+    }
+
+    private void append (String str) throws IOException {
+        for (int idx = 0; idx < str.length(); idx++) {
+            append(str.charAt(idx));
+        }
+    }
+
+    private void append (char c) throws IOException {
+
+        if (pos == buf.length) {
+            flushBuffer();
+        }
+
+        buf[pos++] = c;
+    }
+
+    private void flushBuffer () throws IOException {
+
+        if (pos > 0) {
+            out.write(buf, 0, pos);
+            pos = 0;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package pscraper;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+/**
+ *
+ * @author Asmod
+ *
+ * @brief Matches that were given up on, so the rest of the run can go on.
+ *
+ *        One tab separated line per failure, appended as it happens:
+ *
+ *          time  url  division  unit  attempts  cause
+ *
+ *        unit is "stage <n>" when a stage never loaded, or "match" when the
+ *        page itself didn't. A failed match isn't marked done in the
+ *        journal, so the next run picks it up again from its last finished
+ *        stage. The file is only created once something fails, and is opened
+ *        just long enough to add each line. With no file the failures are
+ *        only counted.
+ *
+ *        All methods are synchronized, so scheduler workers can share one.
+ */
+public class FailureReport {
+
+    public static final String HEADER = "time\turl\tdivision\tunit\tattempts\tcause";
+
+    private final File file;
+
+    private int failures = 0;
+
+    public FailureReport (File file) {
+        this.file = file;
+    }
+
+    public synchronized void failed (String url, String division, String unit, int attempts, String cause) {
+
+        failures++;
+
+        if (file == null) {
+            return;
+        }
+
+        boolean fresh = !file.exists() || file.length() == 0;
+
+        try (Writer out = new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8)) {
+
+            if (fresh) {
+                out.write(HEADER);
+                out.write('\n');
+            }
+
+            out.write(String.format("%s\t%s\t%s\t%s\t%d\t%s\n", Instant.now(), url, division, unit, attempts,
+                                    (cause == null) ? "" : cause.replaceAll("\\s+", " ")));
+
+        } catch (IOException e) {
+            /* Losing the report mustn't cost the run, the count is still kept */
+        }
+    }
+
+    public synchronized int getFailures () {
+        return failures;
+    }
+
+    public File getFile () {
+        return file;
+    }
+
+    public synchronized String report () {
+
+        if (failures == 0) {
+            return "No matches failed.";
+        }
+
+        return String.format("%d match(es) failed and were skipped%s.", failures,
+                             (file != null) ? String.format(", see %s", file.getName()) : "");
+    }
+}
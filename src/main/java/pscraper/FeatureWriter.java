@@ -0,0 +1,198 @@
+package pscraper;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ *
+ * @author Asmod
+ *
+ * @brief Writes a match's rows as a standardized feature matrix, ready for
+ *        model training without another pass over the CSVs.
+ *
+ *        Each row is the metrics in RowSink.COLUMNS order followed by one
+ *        one-hot column per division in DIVISIONS. As rows stream in, a
+ *        running mean and variance (Welford) and the min/max are kept for
+ *        every column. The rows themselves go through the columnar spill,
+ *        and the transpose on close that builds the dataset anyway is where
+ *        the metric columns are scaled to (x - mean) / std. One-hot columns
+ *        are left as 0/1, and a column with no spread comes out as all 0.
+ *
+ *        The statistics are written next to the matrix as <file>.stats.csv:
+ *
+ *          column,count,mean,variance,std,min,max
+ *
+ *        The variance is the population one, so the numbers line up with a
+ *        StandardScaler fitted to the same rows and can be reused to scale
+ *        new data the same way.
+ *
+ *        The spill keeps the raw rows, so a writer opened with resume picks
+ *        up an unfinished match like any columnar output does, and rebuilds
+ *        the statistics with one pass over the rows already spilled.
+ */
+public class FeatureWriter extends ColumnarDatasetWriter {
+
+    /* One-hot column order, matching PractiScoreScraper's division codes */
+    public static final String[] DIVISIONS = { "CO", "L", "LO", "O", "PCC", "P", "SS" };
+
+    public static final String[] COLUMNS = columnNames();
+
+    private static final int METRICS = RowSink.COLUMNS.length;
+
+    private final File statsFile;
+
+    private final double[] features = new double[COLUMNS.length];
+
+    /* Running statistics, per column */
+    private long           count = 0;
+    private final double[] mean  = new double[COLUMNS.length];
+    private final double[] m2    = new double[COLUMNS.length];
+    private final double[] min   = new double[COLUMNS.length];
+    private final double[] max   = new double[COLUMNS.length];
+
+    /* Filled in on close, just before the transpose reads it */
+    private double[] scale;
+
+    /* Never carries over a finished file, its values are already scaled */
+    public FeatureWriter (File file, boolean resume) throws IOException {
+
+        super(file, COLUMNS, false, resume);
+
+        statsFile = new File(file.getPath() + ".stats.csv");
+
+        Arrays.fill(min, Double.POSITIVE_INFINITY);
+        Arrays.fill(max, Double.NEGATIVE_INFINITY);
+
+        if (getRowsWritten() > 0) {
+            readSpill(this::accumulate);
+        }
+    }
+
+    public FeatureWriter (File file) throws IOException {
+        this(file, false);
+    }
+
+    private static String[] columnNames () {
+
+        String[] names = Arrays.copyOf(RowSink.COLUMNS, RowSink.COLUMNS.length + DIVISIONS.length);
+
+        for (int idx = 0; idx < DIVISIONS.length; idx++) {
+            names[RowSink.COLUMNS.length + idx] = "div_" + DIVISIONS[idx];
+        }
+
+        return names;
+    }
+
+    /**
+     * Adds one shooter's metrics, as written to the other outputs, with the
+     * one-hot columns set from divCode. An unknown or null division leaves
+     * them all 0.
+     */
+    @Override
+    public void writeRow (double[] row, int len, String divCode) throws IOException {
+
+        if (len != METRICS) {
+            throw new IOException(String.format("Row has %d values, expected %d metrics.", len, METRICS));
+        }
+
+        System.arraycopy(row, 0, features, 0, METRICS);
+
+        for (int idx = 0; idx < DIVISIONS.length; idx++) {
+            features[METRICS + idx] = DIVISIONS[idx].equals(divCode) ? 1 : 0;
+        }
+
+        super.writeRow(features, features.length);
+
+        accumulate(features);
+    }
+
+    /* Welford update of every column's statistics with one row */
+    private void accumulate (double[] row) {
+
+        count++;
+
+        for (int col = 0; col < row.length; col++) {
+
+            double value = row[col];
+            double delta = value - mean[col];
+
+            mean[col] += delta / count;
+            m2[col]   += delta * (value - mean[col]);
+
+            if (value < min[col]) min[col] = value;
+            if (value > max[col]) max[col] = value;
+        }
+    }
+
+    /* Rows without a division get no one-hot bit */
+    @Override
+    public void writeRow (double[] row, int len) throws IOException {
+        writeRow(row, len, null);
+    }
+
+    public long getCount () {
+        return count;
+    }
+
+    public double getMean (int col) {
+        return mean[col];
+    }
+
+    public double getVariance (int col) {
+        return (count > 0) ? m2[col] / count : 0;
+    }
+
+    public double getMin (int col) {
+        return (count > 0) ? min[col] : Double.NaN;
+    }
+
+    public double getMax (int col) {
+        return (count > 0) ? max[col] : Double.NaN;
+    }
+
+    @Override
+    public void close () throws IOException {
+
+        if (scale != null) {
+            return;
+        }
+
+        scale = new double[COLUMNS.length];
+
+        for (int col = 0; col < METRICS; col++) {
+            double std = Math.sqrt(getVariance(col));
+            scale[col] = (std > 0) ? 1 / std : 0;
+        }
+
+        super.close();
+
+        writeStats();
+    }
+
+    @Override
+    protected double transform (int col, double value) {
+        return (col < METRICS) ? (value - mean[col]) * scale[col] : value;
+    }
+
+    private void writeStats () throws IOException {
+
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(statsFile), StandardCharsets.UTF_8))) {
+
+            out.write("column,count,mean,variance,std,min,max\n");
+
+            for (int col = 0; col < COLUMNS.length; col++) {
+
+                double variance = getVariance(col);
+
+                out.write(String.format("%s,%d,%s,%s,%s,%s,%s\n", COLUMNS[col], count, mean[col], variance,
+                                        Math.sqrt(variance), getMin(col), getMax(col)));
+            }
+        }
+    }
+}
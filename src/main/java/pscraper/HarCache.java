@@ -0,0 +1,248 @@
+package pscraper;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import com.microsoft.playwright.BrowserContext;
+import com.microsoft.playwright.options.HarMode;
+import com.microsoft.playwright.options.HarNotFound;
+import com.microsoft.playwright.options.RouteFromHarUpdateContentPolicy;
+
+/**
+ *
+ * @author Asmod
+ * 
+ * @brief On-disk record/replay cache of match page traffic.
+ * 
+ *        Each match URL maps to a HAR archive (<sha256>.zip) plus a small
+ *        <sha256>.meta file holding the URL and when it was recorded. A miss
+ *        records the context's traffic to a temporary archive, which only
+ *        becomes the cache entry once the match finishes cleanly. A hit
+ *        serves the page from the archive through routeFromHAR.
+ * 
+ *        Offline, nothing is recorded and a miss is served nothing at all,
+ *        so a match that isn't cached fails instead of loading live. An
+ *        expired entry is still served then, it's the only copy there is.
+ *
+ *        Entries older than the max age are dropped on lookup. The archive's
+ *        modified time doubles as its last use, and the least recently used
+ *        entries are evicted whenever the cache grows past its size limit.
+ */
+public class HarCache {
+
+    private final File dir;
+
+    private long maxBytes    = 2L * 1024 * 1024 * 1024;
+    private long maxAgeMillis = 30L * 24 * 60 * 60 * 1000;
+
+    /* Offline, anything not in the archive fails rather than going to the network */
+    private boolean offline = false;
+
+    private int hits   = 0;
+    private int misses = 0;
+
+    public HarCache (File dir) {
+        this.dir = dir;
+    }
+
+    public void setMaxBytes (long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public void setMaxAgeMillis (long maxAgeMillis) {
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+    public void setOffline (boolean offline) {
+        this.offline = offline;
+    }
+
+    public boolean isOffline () {
+        return offline;
+    }
+
+    /* Whether attach would serve this URL from an entry */
+    public boolean contains (String url) {
+        return archive(url).exists() && (offline || !isExpired(url));
+    }
+
+    /**
+     * Routes the context through the cache for this URL. Returns true if it
+     * will be served from an existing entry, false if it is being recorded,
+     * or offline, if every request it makes will be aborted.
+     */
+    public boolean attach (BrowserContext context, String url) throws IOException {
+
+        Files.createDirectories(dir.toPath());
+
+        File archive = archive(url);
+
+        if (contains(url)) {
+
+            hits++;
+
+            /* Touch it so LRU eviction sees the use */
+            archive.setLastModified(System.currentTimeMillis());
+
+            context.routeFromHAR(archive.toPath(), new BrowserContext.RouteFromHAROptions()
+                                    .setNotFound(offline ? HarNotFound.ABORT : HarNotFound.FALLBACK));
+            return true;
+        }
+
+        misses++;
+
+        /* Never the network, and nothing to record */
+        if (offline) {
+            context.route("**/*", route -> route.abort());
+            return false;
+        }
+
+        remove(url);
+
+        /* Playwright writes the archive out when the context closes */
+        File pending = pending(url);
+        Files.deleteIfExists(pending.toPath());
+
+        context.routeFromHAR(pending.toPath(), new BrowserContext.RouteFromHAROptions()
+                                .setUpdate(true)
+                                .setUpdateMode(HarMode.FULL)
+                                .setUpdateContent(RouteFromHarUpdateContentPolicy.ATTACH));
+        return false;
+    }
+
+    /**
+     * Promotes a finished recording to a cache entry. Call after the
+     * recording context has been closed, and only if the match completed.
+     */
+    public void commit (String url) throws IOException {
+
+        File pending = pending(url);
+
+        if (!pending.exists()) {
+            return;
+        }
+
+        Files.move(pending.toPath(), archive(url).toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+        Files.write(meta(url).toPath(),
+                    String.format("%s\n%d\n", url, System.currentTimeMillis()).getBytes(StandardCharsets.UTF_8));
+
+        evict();
+    }
+
+    /* Throws away a recording that didn't finish */
+    public void discard (String url) {
+        pending(url).delete();
+    }
+
+    public String report () {
+        return String.format("Page cache: %d hit(s), %d miss(es), %d bytes on disk.", hits, misses, totalBytes());
+    }
+
+    private boolean isExpired (String url) {
+
+        try {
+            List<String> lines = Files.readAllLines(meta(url).toPath(), StandardCharsets.UTF_8);
+
+            long recorded = Long.parseLong(lines.get(1).trim());
+
+            return System.currentTimeMillis() - recorded > maxAgeMillis;
+
+        } catch (IOException | RuntimeException e) {
+            /* No usable metadata, treat it as stale */
+            return true;
+        }
+    }
+
+    private void remove (String url) {
+        archive(url).delete();
+        meta(url).delete();
+    }
+
+    private void evict () {
+
+        File[] archives = dir.listFiles((d, name) -> name.endsWith(".zip") && !name.endsWith(".pending.zip"));
+
+        if (archives == null) {
+            return;
+        }
+
+        List<File> entries = new ArrayList<>(Arrays.asList(archives));
+
+        /* Oldest use first */
+        entries.sort(Comparator.comparingLong(File::lastModified));
+
+        long total = 0;
+        for (File entry : entries) {
+            total += entry.length();
+        }
+
+        for (File entry : entries) {
+
+            if (total <= maxBytes) {
+                break;
+            }
+
+            total -= entry.length();
+
+            String base = entry.getName().substring(0, entry.getName().length() - ".zip".length());
+
+            entry.delete();
+            new File(dir, base + ".meta").delete();
+        }
+    }
+
+    private long totalBytes () {
+
+        File[] archives = dir.listFiles((d, name) -> name.endsWith(".zip"));
+
+        long total = 0;
+
+        if (archives != null) {
+            for (File archive : archives) {
+                total += archive.length();
+            }
+        }
+
+        return total;
+    }
+
+    private File archive (String url) {
+        return new File(dir, key(url) + ".zip");
+    }
+
+    private File pending (String url) {
+        return new File(dir, key(url) + ".pending.zip");
+    }
+
+    private File meta (String url) {
+        return new File(dir, key(url) + ".meta");
+    }
+
+    private static String key (String url) {
+
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(url.getBytes(StandardCharsets.UTF_8));
+
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+
+            return hex.toString();
+
+        } catch (NoSuchAlgorithmException e) {
+            /* Every JVM ships SHA-256 */
+            throw new IllegalStateException(e);
+        }
+    }
+}
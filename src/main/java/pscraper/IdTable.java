@@ -0,0 +1,87 @@
+package pscraper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *
+ * @author Asmod
+ * 
+ * @brief Hands out dense int ids for strings, 0 up, in order of first sight.
+ * 
+ *        Open addressing over an int array of ids, so a lookup costs a hash
+ *        and an equals with no boxing along the way.
+ */
+public class IdTable {
+
+    private final List<String> keys = new ArrayList<>();
+
+    /* id + 1 per slot, 0 is empty */
+    private int[] slots = new int[16];
+
+    /* Id for key, adding it if it's new */
+    public int intern (String key) {
+
+        int slot = find(key);
+
+        if (slots[slot] != 0) {
+            return slots[slot] - 1;
+        }
+
+        keys.add(key);
+        slots[slot] = keys.size();
+
+        if (keys.size() * 2 > slots.length) {
+            grow();
+        }
+
+        return keys.size() - 1;
+    }
+
+    /* Id for key, or -1 if it's never been seen */
+    public int get (String key) {
+
+        int slot = find(key);
+
+        return slots[slot] - 1;
+    }
+
+    public String key (int id) {
+        return keys.get(id);
+    }
+
+    public int size () {
+        return keys.size();
+    }
+
+    /* The slot holding key, or the empty one it would go in */
+    private int find (String key) {
+
+        int mask = slots.length - 1;
+        int slot = LongHashSet.mix(key.hashCode()) & mask;
+
+        while (slots[slot] != 0 && !keys.get(slots[slot] - 1).equals(key)) {
+            slot = (slot + 1) & mask;
+        }
+
+        return slot;
+    }
+
+    private void grow () {
+
+        slots = new int[slots.length * 2];
+
+        int mask = slots.length - 1;
+
+        for (int id = 0; id < keys.size(); id++) {
+
+            int slot = LongHashSet.mix(keys.get(id).hashCode()) & mask;
+
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+
+            slots[slot] = id + 1;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package pscraper;
+
+import java.util.Arrays;
+
+/**
+ *
+ * @author Asmod
+ * 
+ * @brief Growable int array, with no boxing.
+ */
+public class IntList {
+
+    private int[] values;
+    private int   size = 0;
+
+    public IntList () {
+        this(8);
+    }
+
+    public IntList (int capacity) {
+        values = new int[Math.max(1, capacity)];
+    }
+
+    public void add (int value) {
+
+        if (size == values.length) {
+            values = Arrays.copyOf(values, values.length * 2);
+        }
+
+        values[size++] = value;
+    }
+
+    public int get (int idx) {
+
+        if (idx >= size) {
+            throw new IndexOutOfBoundsException(String.format("%d of %d", idx, size));
+        }
+
+        return values[idx];
+    }
+
+    public int size () {
+        return size;
+    }
+
+    public int[] toArray () {
+        return Arrays.copyOf(values, size);
+    }
+}
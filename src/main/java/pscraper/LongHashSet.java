@@ -0,0 +1,116 @@
+package pscraper;
+
+/**
+ *
+ * @author Asmod
+ * 
+ * @brief Open addressing set of longs, with no boxing.
+ * 
+ *        Eight bytes a slot and kept at most half full. Zero marks an empty
+ *        slot, so it's tracked on the side.
+ */
+public class LongHashSet {
+
+    private long[]  slots;
+    private int     size    = 0;
+    private boolean hasZero = false;
+
+    public LongHashSet () {
+        this(16);
+    }
+
+    public LongHashSet (int expected) {
+        slots = new long[tableSize(expected)];
+    }
+
+    /* True if value wasn't already there */
+    public boolean add (long value) {
+
+        if (value == 0) {
+            boolean added = !hasZero;
+            hasZero = true;
+            return added;
+        }
+
+        int mask = slots.length - 1;
+        int idx  = mix(value) & mask;
+
+        while (slots[idx] != 0) {
+            if (slots[idx] == value) {
+                return false;
+            }
+            idx = (idx + 1) & mask;
+        }
+
+        slots[idx] = value;
+
+        if (++size * 2 > slots.length) {
+            grow();
+        }
+
+        return true;
+    }
+
+    public boolean contains (long value) {
+
+        if (value == 0) {
+            return hasZero;
+        }
+
+        int mask = slots.length - 1;
+        int idx  = mix(value) & mask;
+
+        while (slots[idx] != 0) {
+            if (slots[idx] == value) {
+                return true;
+            }
+            idx = (idx + 1) & mask;
+        }
+
+        return false;
+    }
+
+    public int size () {
+        return size + (hasZero ? 1 : 0);
+    }
+
+    private void grow () {
+
+        long[] old = slots;
+
+        slots = new long[old.length * 2];
+
+        int mask = slots.length - 1;
+
+        for (long value : old) {
+            if (value != 0) {
+                int idx = mix(value) & mask;
+                while (slots[idx] != 0) {
+                    idx = (idx + 1) & mask;
+                }
+                slots[idx] = value;
+            }
+        }
+    }
+
+    static int tableSize (int expected) {
+
+        int size = 16;
+
+        while (size < expected * 2) {
+            size <<= 1;
+        }
+
+        return size;
+    }
+
+    /* Spreads the bits so sequential keys don't cluster */
+    static int mix (long value) {
+
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+
+        return (int) value;
+    }
+}
@@ -0,0 +1,223 @@
+package pscraper;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *
+ * @author Asmod
+ * 
+ * @brief Reads a match manifest: one "fileName,url" line per match.
+ * 
+ *        Matches are read one line at a time as they're asked for, so a run
+ *        can start on the first match of a season-wide manifest without
+ *        holding the rest of it. Blank lines are ignored. Lines that don't
+ *        parse are skipped and kept for the report rather than failing the
+ *        whole file. A URL seen before is skipped too, so only a 64-bit hash
+ *        of each is remembered.
+ */
+public class Manifest implements Closeable {
+
+    private static final int FNAME_IDX  = 0;
+    private static final int URL_IDX    = 1;
+
+    /* Only the first few bad lines are kept word for word */
+    private static final int MAX_PROBLEMS = 50;
+
+    private final String         name;
+    private final long           length;
+    private final CountingStream counter;
+    private final BufferedReader reader;
+
+    private final LongHashSet seen = new LongHashSet(1024);
+
+    private final List<String> problems = new ArrayList<>();
+
+    private int     lineNum    = 0;
+    private int     matches    = 0;
+    private int     malformed  = 0;
+    private int     duplicates = 0;
+    private boolean finished   = false;
+
+    public Manifest (File file) throws IOException {
+
+        this.name    = file.getName();
+        this.length  = file.length();
+        this.counter = new CountingStream(new FileInputStream(file));
+        this.reader  = new BufferedReader(new InputStreamReader(counter, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * The next good match, or null at the end of the file. The file is closed
+     * once it runs out.
+     */
+    public synchronized Match next () throws IOException {
+
+        String line;
+
+        while (!finished && (line = reader.readLine()) != null) {
+
+            lineNum++;
+
+            line = line.trim();
+
+            if (line.isEmpty()) {
+                continue;
+            }
+
+            String[] lineData = line.split(",");
+
+            /* Validate Input */
+            if (lineData.length <= URL_IDX || !lineData[URL_IDX].contains("https://practiscore.com/results/")) {
+                problem(String.format("Invalid URL on line %d of %s.", lineNum, name));
+                malformed++;
+                continue;
+            }
+
+            String fileName = lineData[FNAME_IDX].trim();
+            String url      = lineData[URL_IDX].trim();
+
+            if (fileName.isEmpty()) {
+                problem(String.format("No file name on line %d of %s.", lineNum, name));
+                malformed++;
+                continue;
+            }
+
+            if (!seen.add(hash(url))) {
+                duplicates++;
+                continue;
+            }
+
+            matches++;
+
+            return new Match(fileName, url);
+        }
+
+        close();
+
+        return null;
+    }
+
+    /**
+     * How many matches the file holds, judging by how far through it we are.
+     * Exact once it's been read to the end.
+     */
+    public synchronized int estimatedTotal () {
+
+        if (finished || matches == 0 || counter.count == 0) {
+            return matches;
+        }
+
+        /* The reader runs ahead of the lines it's handed out by up to a buffer, so never read this as done early */
+        double through = Math.min(1.0, (double) counter.count / Math.max(1, length));
+
+        return Math.max(matches + 1, (int) Math.round(matches / through));
+    }
+
+    /* Matches handed out so far */
+    public synchronized int getMatchCount () {
+        return matches;
+    }
+
+    public synchronized boolean isFinished () {
+        return finished;
+    }
+
+    public synchronized List<String> getProblems () {
+        return new ArrayList<>(problems);
+    }
+
+    public synchronized String report () {
+
+        String report = String.format("Manifest %s: %d match(es), %d bad line(s) skipped, %d duplicate(s) skipped.",
+                                      name, matches, malformed, duplicates);
+
+        if (malformed > problems.size()) {
+            report += String.format(" First %d bad lines kept.", problems.size());
+        }
+
+        return report;
+    }
+
+    @Override
+    public synchronized void close () throws IOException {
+
+        if (!finished) {
+            finished = true;
+            reader.close();
+        }
+    }
+
+    /* Reads a whole manifest in one go, skipping anything bad */
+    public static List<Match> load (File file) throws IOException {
+
+        List<Match> all = new ArrayList<>();
+
+        try (Manifest manifest = new Manifest(file)) {
+
+            Match match;
+
+            while ((match = manifest.next()) != null) {
+                all.add(match);
+            }
+        }
+
+        return all;
+    }
+
+    private void problem (String message) {
+
+        if (problems.size() < MAX_PROBLEMS) {
+            problems.add(message);
+        }
+    }
+
+    /* FNV-1a, 64 bit */
+    private static long hash (String url) {
+
+        long hash = 0xcbf29ce484222325L;
+
+        for (int idx = 0; idx < url.length(); idx++) {
+            hash ^= url.charAt(idx);
+            hash *= 0x100000001b3L;
+        }
+
+        return hash;
+    }
+
+    private static class CountingStream extends FilterInputStream {
+
+        volatile long count = 0;
+
+        CountingStream (InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read () throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read (byte[] buf, int off, int len) throws IOException {
+            int read = super.read(buf, off, len);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package pscraper;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ *
+ * @author Asmod
+ * 
+ * @brief The matches of a run, handed out one at a time to whoever is free.
+ * 
+ *        A single scraper drains it in order. Under a MatchScheduler every
+ *        worker claims from the same queue, so a slow match only holds up the
+ *        worker that drew it. Fed from a Manifest, the next line is only read
+ *        when a worker is free to take it, so the file is never read further
+ *        ahead than the scrape.
+ * 
+ *        Each match reports how far along it is, and progress is the share of
+ *        the whole run done, so it climbs steadily rather than starting over
+ *        with every match. Only matches in flight are remembered.
+ */
+public class MatchQueue {
+
+    private final Iterator<Match> list;
+    private final Manifest        manifest;
+    private final int             listSize;
+
+    /* Matches claimed but not finished, and how far along each is */
+    private final Map<Integer, Match> claimed  = new HashMap<>();
+    private final Map<Integer, Float> fraction = new HashMap<>();
+
+    private int   next     = 0;
+    private int   finished = 0;
+    private float partial  = 0;
+
+    private String error;
+
+    public MatchQueue (List<Match> matches) {
+        this.list     = matches.iterator();
+        this.listSize = matches.size();
+        this.manifest = null;
+    }
+
+    public MatchQueue (Manifest manifest) {
+        this.list     = null;
+        this.listSize = 0;
+        this.manifest = manifest;
+    }
+
+    /* Index of the next unclaimed match, or -1 once they're all taken */
+    public synchronized int claim () {
+
+        Match match = null;
+
+        if (list != null) {
+            match = list.hasNext() ? list.next() : null;
+        } else if (error == null) {
+            try {
+                match = manifest.next();
+            } catch (IOException e) {
+                error = String.format("Manifest stopped being readable: %s", e.getMessage());
+            }
+        }
+
+        if (match == null) {
+            return -1;
+        }
+
+        claimed.put(next, match);
+        fraction.put(next, 0f);
+
+        return next++;
+    }
+
+    public synchronized Match get (int idx) {
+        return claimed.get(idx);
+    }
+
+    /* Matches in the run, estimated until a manifest has been read through */
+    public synchronized int size () {
+        return (manifest != null) ? manifest.estimatedTotal() : listSize;
+    }
+
+    /**
+     * Records how much of a match is done, from 0 to 1, and returns the run's
+     * overall progress as a percentage. Once a match reaches 1 it's forgotten.
+     */
+    public synchronized int progress (int idx, float done) {
+
+        Float before = fraction.get(idx);
+
+        if (before != null) {
+
+            done = Math.max(0, Math.min(1, done));
+
+            if (done >= 1) {
+                fraction.remove(idx);
+                claimed.remove(idx);
+                finished++;
+                partial -= before;
+            } else {
+                fraction.put(idx, done);
+                partial += done - before;
+            }
+        }
+
+        return progress();
+    }
+
+    public synchronized int progress () {
+
+        int total = size();
+
+        return (total == 0) ? 100 : Math.min(100, Math.round((finished + partial) * 100 / total));
+    }
+
+    /* What came of reading the manifest, or null when there wasn't one */
+    public synchronized String report () {
+
+        if (manifest == null) {
+            return null;
+        }
+
+        return (error != null) ? manifest.report() + " " + error : manifest.report();
+    }
+}
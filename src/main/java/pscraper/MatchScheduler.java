@@ -0,0 +1,231 @@
+package pscraper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import Events.EventDispatcher;
+import Events.LifecycleEvt;
+import Events.StateEvt;
+import Handlers.LifecycleHandler;
+import Handlers.ProgressHandler;
+import Handlers.StateHandler;
+
+/**
+ *
+ * @author Asmod
+ *
+ * @brief Scrapes several matches at once, one browser per worker.
+ *
+ *        Playwright objects belong to the thread that made them, so each
+ *        worker is a PractiScoreScraper with its own browser, claiming
+ *        matches from a shared MatchQueue until it runs dry. The workers
+ *        share one journal, one RateLimiter, one CircuitBreaker (so they
+ *        all pause when the site struggles) and one FailureReport. Each
+ *        match still gets its own output files.
+ *
+ *        Handlers added here see the run as a whole: progress across every
+ *        match, state messages tagged with their worker, and one lifecycle
+ *        event once every worker has stopped.
+ */
+public class MatchScheduler implements Runnable {
+
+    /* Last chance to configure each worker before it starts */
+    public interface WorkerSetup {
+        void configure (int worker, PractiScoreScraper scraper);
+    }
+
+    private final MatchQueue  queue;
+    private final String      division;
+    private final boolean     headless;
+    private final int         workers;
+
+    private File           journalFile   = new File("./pscraper.journal");
+    private RateLimiter    rateLimiter;
+    private RetryPolicy    retryPolicy   = new RetryPolicy();
+    private CircuitBreaker breaker       = new CircuitBreaker();
+    private FailureReport  failureReport = new FailureReport(new File("./pscraper.failures"));
+    private WorkerSetup    setup;
+
+    private final EventDispatcher events = new EventDispatcher();
+
+    private final AtomicInteger progress = new AtomicInteger(-1);
+
+    public MatchScheduler (List<Match> matches, String division, boolean headless, int workers) {
+        this(new MatchQueue(matches), division, headless, workers);
+    }
+
+    /* Workers start as soon as the first match is read, the rest are read as workers free up */
+    public MatchScheduler (Manifest manifest, String division, boolean headless, int workers) {
+        this(new MatchQueue(manifest), division, headless, workers);
+    }
+
+    private MatchScheduler (MatchQueue queue, String division, boolean headless, int workers) {
+
+        this.queue    = queue;
+        this.division = division;
+        this.headless = headless;
+        this.workers  = Math.max(1, workers);
+    }
+
+    public void setJournalFile (File journalFile) {
+        this.journalFile = journalFile;
+    }
+
+    public void setRateLimiter (RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    public void setRetryPolicy (RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+
+    public void setCircuitBreaker (CircuitBreaker breaker) {
+        this.breaker = breaker;
+    }
+
+    public void setFailureReport (FailureReport failureReport) {
+        this.failureReport = failureReport;
+    }
+
+    public FailureReport getFailureReport () {
+        return failureReport;
+    }
+
+    public void setWorkerSetup (WorkerSetup setup) {
+        this.setup = setup;
+    }
+
+    public void addStateHandler (StateHandler stateHandler, Executor executor) {
+        events.addStateHandler(stateHandler, executor);
+    }
+
+    public void addProgressHandler (ProgressHandler progressHandler, Executor executor) {
+        events.addProgressHandler(progressHandler, executor);
+    }
+
+    public void addLifecycleHandler (LifecycleHandler lifecycleHandler, Executor executor) {
+        events.addLifecycleHandler(lifecycleHandler, executor);
+    }
+
+    @Override
+    public void run () {
+
+        events.start();
+
+        try {
+            schedule();
+        } finally {
+            events.close();
+        }
+    }
+
+    private void schedule () {
+
+        ScrapeJournal journal = null;
+
+        if (journalFile != null) {
+            try {
+                journal = new ScrapeJournal(journalFile);
+            } catch (IOException e) {
+                events.publishState(new StateEvt("Unable to open journal, progress will not be saved."));
+            }
+        }
+
+        /* A list knows its size up front, so don't start more workers than matches */
+        int count = Math.max(1, Math.min(workers, queue.size() > 0 ? queue.size() : workers));
+
+        List<Thread> threads  = new ArrayList<>();
+        List<String> failures = new ArrayList<>();
+
+        for (int worker = 0; worker < count; worker++) {
+
+            PractiScoreScraper scraper = new PractiScoreScraper(queue, division, headless);
+
+            /* Each worker opening the same file would make a mess of it */
+            scraper.setJournalFile(null);
+            scraper.setJournal(journal);
+            scraper.setRateLimiter(rateLimiter);
+            scraper.setRetryPolicy(retryPolicy);
+            scraper.setCircuitBreaker(breaker);
+            scraper.setFailureReport(failureReport);
+
+            if (setup != null) {
+                setup.configure(worker, scraper);
+            }
+
+            final int id = worker;
+
+            /* Every worker reports the same run-wide figure, so only ever move forward */
+            scraper.addProgressHandler(evt -> {
+                if (progress.getAndAccumulate(evt.progress, Math::max) < evt.progress) {
+                    events.publishProgress(evt.progress);
+                }
+            });
+
+            scraper.addStateHandler(evt -> events.publishState(
+                new StateEvt(evt.transientState, "[%d] %s", id, evt.getStateText())));
+
+            scraper.addLifecycleHandler(evt -> {
+                if (evt.kind == LifecycleEvt.Kind.ABORTED) {
+                    synchronized (failures) {
+                        failures.add(String.format("worker %d: %s", id, evt.message));
+                    }
+                }
+            });
+
+            Thread thread = new Thread(scraper, String.format("scraper-worker-%d", worker));
+
+            /* A worker that dies outright never sends a lifecycle event of its own */
+            thread.setUncaughtExceptionHandler((t, e) -> {
+                synchronized (failures) {
+                    failures.add(String.format("worker %d: %s", id, e));
+                }
+            });
+
+            threads.add(thread);
+            thread.start();
+        }
+
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                synchronized (failures) {
+                    failures.add("interrupted");
+                }
+            }
+        }
+
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {}
+        }
+
+        if (queue.report() != null) {
+            events.publishState(new StateEvt(queue.report()));
+        }
+
+        if (rateLimiter != null) {
+            events.publishState(new StateEvt(rateLimiter.report()));
+        }
+
+        events.publishState(new StateEvt(breaker.report()));
+        events.publishState(new StateEvt(failureReport.report()));
+
+        synchronized (failures) {
+            if (failures.isEmpty()) {
+                events.publishLifecycle(new LifecycleEvt(LifecycleEvt.Kind.COMPLETE,
+                    String.format("Scrape complete, %d match(es) on %d worker(s), %d skipped after failing.",
+                                  queue.size(), count, failureReport.getFailures())));
+            } else {
+                events.publishLifecycle(new LifecycleEvt(LifecycleEvt.Kind.ABORTED, String.join("; ", failures)));
+            }
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package pscraper;
+
+/**
+ *
+ * @author Asmod
+ * 
+ * @brief The on-disk formats a scrape can be written in.
+ */
+public enum OutputFormat {
+
+    CSV      (".csv"),
+    GZIP     (".csv.gz"),
+    COLUMNAR (".pscol");
+
+    public final String extension;
+
+    private OutputFormat (String extension) {
+        this.extension = extension;
+    }
+}
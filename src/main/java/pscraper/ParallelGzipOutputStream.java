@@ -0,0 +1,294 @@
+package pscraper;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ *
+ * @author Asmod
+ *
+ * @brief Gzip output compressed a block at a time on a thread pool, the
+ *        way pigz does it.
+ *
+ *        Input is cut into fixed size blocks. Each block is deflated on its
+ *        own, primed with the last 32 KB of the block before it so the ratio
+ *        holds up, and ends on a byte boundary with a sync flush so the
+ *        compressed blocks can simply be laid end to end. The CRC is kept on
+ *        the calling thread as bytes arrive. Blocks are written out in order
+ *        as they finish, and only so many are let in flight at once before
+ *        write() waits on the oldest.
+ *
+ *        The output is one or more standard gzip members. finishMember()
+ *        closes the current one, so the file length at that point is a
+ *        place it can safely be cut back to, and everything up to there
+ *        reads back with gunzip or GZIPInputStream. flush() only passes on
+ *        blocks that are already compressed, a partial block waits for the
+ *        member to finish.
+ *
+ *        Every stream shares one small daemon pool by default, so several
+ *        matches writing at once don't each bring their own threads.
+ */
+public class ParallelGzipOutputStream extends OutputStream {
+
+    public static final int DEFAULT_BLOCK_SIZE = 128 * 1024;
+
+    private static final int DICTIONARY = 32 * 1024;
+
+    /* Minimal header: deflate, no flags, no mtime, unknown OS */
+    private static final byte[] HEADER = { 0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, (byte) 0xff };
+
+    private static final ExecutorService SHARED_POOL = Executors.newFixedThreadPool(
+        Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors())), daemonThreads());
+
+    private static final ThreadLocal<Deflater> DEFLATERS = new ThreadLocal<>();
+
+    private final OutputStream    out;
+    private final ExecutorService pool;
+    private final int             blockSize;
+    private final int             level;
+    private final int             maxInFlight;
+
+    private final ArrayDeque<Future<byte[]>> inFlight = new ArrayDeque<>();
+
+    private byte[] block;
+    private int    pos = 0;
+
+    /* The last block handed off in this member, its tail primes the next one */
+    private byte[] previous;
+    private int    previousLen;
+
+    private final CRC32 crc = new CRC32();
+
+    private long    memberBytes = 0;
+    private boolean inMember    = false;
+    private boolean closed      = false;
+
+    public ParallelGzipOutputStream (OutputStream out, int blockSize, int level, ExecutorService pool) {
+
+        this.out         = out;
+        this.pool        = pool;
+        this.blockSize   = Math.max(DICTIONARY, blockSize);
+        this.level       = level;
+        this.maxInFlight = 2 * Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+        this.block       = new byte[this.blockSize];
+    }
+
+    public ParallelGzipOutputStream (OutputStream out) {
+        this(out, DEFAULT_BLOCK_SIZE, Deflater.DEFAULT_COMPRESSION, SHARED_POOL);
+    }
+
+    private static ThreadFactory daemonThreads () {
+
+        AtomicInteger count = new AtomicInteger();
+
+        return task -> {
+            Thread thread = new Thread(task, String.format("gzip-%d", count.incrementAndGet()));
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    @Override
+    public void write (int b) throws IOException {
+
+        ensureOpen();
+
+        if (pos == block.length) {
+            submit(false);
+        }
+
+        block[pos++] = (byte) b;
+    }
+
+    @Override
+    public void write (byte[] buf, int off, int len) throws IOException {
+
+        ensureOpen();
+
+        while (len > 0) {
+
+            if (pos == block.length) {
+                submit(false);
+            }
+
+            int chunk = Math.min(len, block.length - pos);
+
+            System.arraycopy(buf, off, block, pos, chunk);
+
+            pos += chunk;
+            off += chunk;
+            len -= chunk;
+        }
+    }
+
+    /* Passes on whatever blocks are done, without cutting the current one short */
+    @Override
+    public void flush () throws IOException {
+
+        ensureOpen();
+
+        writeCompleted(false);
+
+        out.flush();
+    }
+
+    /**
+     * Compresses what's left, waits for every block and writes the member
+     * trailer. Does nothing if nothing was written since the last one.
+     */
+    public void finishMember () throws IOException {
+
+        ensureOpen();
+
+        if (!inMember && pos == 0) {
+            return;
+        }
+
+        submit(true);
+
+        writeCompleted(true);
+
+        int crcValue = (int) crc.getValue();
+        int size     = (int) memberBytes;
+
+        out.write(new byte[] {
+            (byte) crcValue, (byte) (crcValue >>> 8), (byte) (crcValue >>> 16), (byte) (crcValue >>> 24),
+            (byte) size,     (byte) (size >>> 8),     (byte) (size >>> 16),     (byte) (size >>> 24)
+        });
+
+        out.flush();
+
+        crc.reset();
+
+        memberBytes = 0;
+        inMember    = false;
+        previous    = null;
+    }
+
+    @Override
+    public void close () throws IOException {
+
+        if (closed) {
+            return;
+        }
+
+        try {
+            finishMember();
+        } finally {
+            closed = true;
+            out.close();
+        }
+    }
+
+    private void ensureOpen () throws IOException {
+
+        if (closed) {
+            throw new IOException("Stream closed.");
+        }
+    }
+
+    /* Hands the current block to the pool, the last of the member if finish is set */
+    private void submit (boolean finish) throws IOException {
+
+        if (!inMember) {
+            out.write(HEADER);
+            inMember = true;
+        }
+
+        final byte[]  data    = block;
+        final int     len     = pos;
+        final byte[]  dict    = previous;
+        final int     dictLen = previousLen;
+        final boolean last    = finish;
+
+        crc.update(data, 0, len);
+        memberBytes += len;
+
+        /* Don't run too far ahead of the pool */
+        while (inFlight.size() >= maxInFlight) {
+            out.write(await(inFlight.poll()));
+        }
+
+        inFlight.add(pool.submit(() -> deflate(data, len, dict, dictLen, last)));
+
+        previous    = data;
+        previousLen = len;
+
+        /* The block is the pool's now */
+        block = new byte[blockSize];
+        pos   = 0;
+    }
+
+    private void writeCompleted (boolean all) throws IOException {
+
+        while (!inFlight.isEmpty() && (all || inFlight.peek().isDone())) {
+            out.write(await(inFlight.poll()));
+        }
+    }
+
+    private static byte[] await (Future<byte[]> future) throws IOException {
+
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while compressing.");
+        } catch (ExecutionException e) {
+            throw new IOException("Compression failed.", e.getCause());
+        }
+    }
+
+    private byte[] deflate (byte[] data, int len, byte[] dict, int dictLen, boolean last) {
+
+        Deflater deflater = DEFLATERS.get();
+
+        if (deflater == null) {
+            deflater = new Deflater(level, true);
+            DEFLATERS.set(deflater);
+        }
+
+        deflater.reset();
+        deflater.setLevel(level);
+
+        if (dict != null) {
+            int dictSize = Math.min(DICTIONARY, dictLen);
+            deflater.setDictionary(dict, dictLen - dictSize, dictSize);
+        }
+
+        deflater.setInput(data, 0, len);
+
+        byte[] buf   = new byte[len + (len >> 3) + 64];
+        int    total = 0;
+
+        if (last) {
+            deflater.finish();
+        }
+
+        while (true) {
+
+            int wrote = deflater.deflate(buf, total, buf.length - total, last ? Deflater.NO_FLUSH : Deflater.SYNC_FLUSH);
+
+            total += wrote;
+
+            /* Done once finished, or once a sync flush leaves room to spare */
+            if (last ? deflater.finished() : total < buf.length) {
+                break;
+            }
+
+            buf = Arrays.copyOf(buf, buf.length * 2);
+        }
+
+        return Arrays.copyOf(buf, total);
+    }
+}
@@ -1,19 +1,29 @@
 package pscraper;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
 
-import com.microsoft.playwright.Browser;
-import com.microsoft.playwright.BrowserType;
+import com.microsoft.playwright.BrowserContext;
 import com.microsoft.playwright.Locator;
 import com.microsoft.playwright.Page;
-import com.microsoft.playwright.Playwright;
+import com.microsoft.playwright.TimeoutError;
+import com.microsoft.playwright.options.WaitUntilState;
 
-import Events.ProgressEvt;
+import pscraper.ScrapeMetrics.Phase;
+
+import Events.EventDispatcher;
+import Events.LifecycleEvt;
 import Events.StateEvt;
+import Handlers.LifecycleHandler;
 import Handlers.ProgressHandler;
 import Handlers.StateHandler;
 
@@ -23,308 +33,1497 @@ import Handlers.StateHandler;
  * 
  * @brief This is the main scraping logic for PractiScore data.
  * 
- *  TO-DO: One Hot Encode the division, and save that off as
- *         well for more robust ML models.
+ *        With feature output on, each match also gets a standardized
+ *        feature matrix with the division one-hot encoded, see FeatureWriter.
  */
 public class PractiScoreScraper implements Runnable {
 
-    private String url      = "";
-    private String fileName = "";
+    private int division     = 1;
+
+    public boolean headless = true;
+
+    private File logFile;
+    public  RowSink fwriter;
+
+    private String divisionStr;
+
+    /* Every division in one pass, each routed to its own <match>_<div>.csv */
+    private boolean allDivisions = false;
+
+    private String matchFileName;
+
+    private Map<String, RowSink> divisionWriters;
+
+    /* Every output the current match has open, keyed by path */
+    private Map<String, RowSink> matchSinks;
+
+    /* Record of finished stages, so a restarted run can skip them */
+    private File          journalFile  = new File("./pscraper.journal");
+    private ScrapeJournal journal;
+    private ScrapeJournal sharedJournal;
+    private boolean       forceRefresh = false;
+
+    private Match currentMatch;
+
+    /* Recorded match page traffic, replayed on later runs. Null means always load live. */
+    private HarCache pageCache;
+
+    /* Paces requests per host, shared with any other scrapers in the run. Null means no limit. */
+    private RateLimiter rateLimiter;
+
+    /* Which of the page's requests actually go out. Null, the default, loads everything. */
+    private ResourcePolicy resourcePolicy;
+
+    /* Division cell text to the short code used in file names */
+    private static final Map<String, String> DIVISION_CODES = new HashMap<>();
+
+    static {
+        DIVISION_CODES.put("Carry Optics",   "CO");
+        DIVISION_CODES.put("Limited",        "L");
+        DIVISION_CODES.put("Limited Optics", "LO");
+        DIVISION_CODES.put("Open",           "O");
+        DIVISION_CODES.put("PCC",            "PCC");
+        DIVISION_CODES.put("Production",     "P");
+        DIVISION_CODES.put("Single Stack",   "SS");
+    }
+
+    private BrowserSession session;
+    private BrowserContext context;
+
+    private TableReadiness readiness;
+
+    private ScrapeMetrics metrics;
+
+    private EventDispatcher events;
+
+    /* Cell layout of a results table row, which ResultsPayload builds rows to match */
+    static final int PSBL_IDX   = 1;
+    static final int MAXPTS_IDX = 2;
+    static final int PTS_IDX    = 3;
+    static final int HF_IDX     = 4;
+    static final int TIME_IDX   = 5;
+    static final int DIV_IDX    = 6;
+    static final int NAME_IDX   = 7;
+    static final int MEMBER_IDX = 8;
+    static final int A_IDX      = 11;
+    static final int B_IDX      = 12;
+    static final int C_IDX      = 13;
+    static final int D_IDX      = 14;
+    static final int M_IDX      = 15;
+    static final int NPM_IDX    = 16;
+    static final int NS_IDX     = 17;
+    static final int PROC_IDX   = 18;
+
+    /* Reused for every shooter, laid out in metricsIndices order */
+    private double[] rowBuf;
+
+    /* Where the stage percentage and hit factor sit in rowBuf */
+    private static final int PSBL_COL = 0;
+    private static final int HF_COL   = 3;
+
+    private int[] metricsIndices;
+    private MatchQueue   queue;
+    private boolean      ownsQueue = false;
+
+    private float shootersProcessed = 0;
+
+    private boolean snapshotMode = false;
+
+    /* Decode results from the page's data downloads rather than its table */
+    private boolean        payloadMode = false;
+    private ResultsPayload payload     = new ResultsPayload();
+
+    /* Fallbacks already reported for the current match, so retries don't repeat them */
+    private Set<String> fallbacks = new HashSet<>();
+
+    private int stagePages = 1;
+
+    /* Per-shooter history of every row written, null to keep none */
+    private ShooterIndex shooterIndex;
+
+    /* Where the index is saved every few matches and when the scraper stops, null leaves saving to the caller */
+    private File indexFile;
+    private int  indexSaveInterval = 10;
+    private int  unsavedMatches    = 0;
+
+    private OutputFormat outputFormat = OutputFormat.CSV;
+
+    /* A <match>_features.pscol matrix alongside the usual output */
+    private boolean       featureOutput = false;
+    private FeatureWriter featureWriter;
+
+    /* Rows are written on their own thread through a ring this big, 0 writes them inline */
+    private int            writeQueue = 4096;
+    private AsyncRowWriter rowWriter;
+
+    /* Flaky pages are retried, and matches that still fail are reported and skipped */
+    private RetryPolicy    retryPolicy   = new RetryPolicy();
+    private CircuitBreaker breaker       = new CircuitBreaker();
+    private FailureReport  failureReport = new FailureReport(new File("./pscraper.failures"));
+    private boolean        ownsRecovery  = true;
+
+    /* Stage the last attempt gave up on, 0 if it was the page itself */
+    private int failedStage = 0;
+
+    /* Set once cleanAbort has torn everything down, after which nothing more is attempted */
+    private volatile boolean aborted = false;
+
+    /* Set by cancel() from any thread, acted on by the scraper's own */
+    private volatile boolean cancelled = false;
+    private final    Object  cancelLock = new Object();
+            
+    public PractiScoreScraper (List<Match> matches, String division, boolean headless) {
+        this(new MatchQueue(matches), division, headless);
+        ownsQueue = true;
+    }
+
+    /* Starts on the first match while the rest of the manifest is still unread */
+    public PractiScoreScraper (Manifest manifest, String division, boolean headless) {
+        this(new MatchQueue(manifest), division, headless);
+        ownsQueue = true;
+    }
+
+    /* Claims its matches from a queue that other scrapers may be working too */
+    public PractiScoreScraper (MatchQueue queue, String division, boolean headless) {
+        
+        this.headless    = headless;
+        this.divisionStr = division;
+        this.queue       = queue;
+
+        events           = new EventDispatcher();
+        readiness        = new TableReadiness();
+        metrics          = new ScrapeMetrics();
+        divisionWriters  = new HashMap<>();
+        matchSinks       = new LinkedHashMap<>();
+
+        populateMetricIndices();
+
+        rowBuf = new double[metricsIndices.length];
+
+        detectDivision ();
+    }
+    
+    @Override
+    public void run () {
+
+        /* Started here rather than on construction, a scraper that never runs has no thread to leak */
+        events.start();
+
+        try {
+            scrape();
+        } finally {
+            /* Outputs are only ever closed here, on the thread writing them. A no-op once finished or aborted. */
+            teardown();
+
+            metrics.end();
+
+            /* Get every last event out before the thread goes away */
+            events.close();
+        }
+    }
+
+    private void scrape () {
+
+        /* Do the PlayWright Magic */
+        events.publishProgress(queue.progress());
+
+        metrics.begin();
+
+        if (writeQueue > 0) {
+            rowWriter = new AsyncRowWriter(writeQueue, rowBuf.length, metrics);
+        }
+
+        /* One runtime and browser for the whole run, one context per match */
+        session = new BrowserSession(headless);
+
+        /* Pick up where any earlier run left off */
+        openJournal();
+
+        for(int matchCntr = queue.claim(); matchCntr >= 0; matchCntr = queue.claim()) {
+
+            if (stopped()) {
+                return;
+            }
+
+            Match match = queue.get(matchCntr);
+
+            /* Firms up as a streamed manifest is read */
+            int totalMatches = queue.size();
+
+            shootersProcessed = 0;
+
+            currentMatch = match;
+
+            if (!prepareMatch(match)) {
+                emitState(String.format("Match %d/%d already scraped, skipping.", matchCntr+1, totalMatches));
+                emitProgress(matchCntr, 1);
+                continue;
+            }
+            
+            /* Offline, a match that was never cached can only fail, so it's reported without trying */
+            if (pageCache != null && pageCache.isOffline() && !pageCache.contains(match.url)) {
+                failureReport.failed(match.url, divisionStr, "match", 0, "Not in the page cache, and offline.");
+                emitState(String.format("Match %d/%d isn't cached, skipping it while offline.", matchCntr+1, totalMatches));
+                emitProgress(matchCntr, 1);
+                continue;
+            }
+
+            /* Unmarked while it's redone, so a save part way through doesn't pass it off as finished */
+            if (shooterIndex != null) {
+                shooterIndex.unmarkMatch(match.url, divisionStr);
+            }
+
+            openOutputs(match);
+
+            if (aborted) {
+                return;
+            }
+            
+            emitState("Log file created.");
+            
+            /* Retry on a fresh context until the match is scraped, aborted or given up on */
+            Set<Integer> finished = new HashSet<>();
+
+            fallbacks.clear();
+
+            boolean scraped = false;
+
+            for (int attempt = 1; !scraped && !aborted; attempt++) {
+
+                if (!awaitBreaker()) {
+                    break;
+                }
+
+                try {
+                    scrapeMatch(match, matchCntr, totalMatches, finished);
+
+                    scraped = !aborted;
+
+                } catch (RuntimeException e) {
+
+                    closeContext();
+
+                    /* Whatever was recorded for the failed attempt isn't worth replaying */
+                    if (pageCache != null) {
+                        pageCache.discard(match.url);
+                    }
+
+                    /* A stage that ran out of attempts has already told the breaker about each one */
+                    if (failedStage == 0) {
+                        breaker.failure();
+                    }
+
+                    metrics.error("Match attempt failed");
+
+                    if (stopped()) {
+                        break;
+                    }
+
+                    if (attempt >= retryPolicy.getMatchAttempts()) {
+
+                        String unit = (failedStage > 0) ? String.format("stage %d", failedStage) : "match";
+
+                        failureReport.failed(match.url, divisionStr, unit, attempt, describe(e));
+
+                        emitState(String.format("Match %d/%d failed at %s after %d attempt(s), skipping it.",
+                                                matchCntr+1, totalMatches, unit, attempt));
+                        break;
+                    }
+
+                    long wait = retryPolicy.backoffMillis(attempt);
+
+                    emitState(String.format("Match %d/%d failed (%s), retrying on a fresh context in %d ms.",
+                                            matchCntr+1, totalMatches, describe(e), wait));
+
+                    if (!pause(wait)) {
+                        break;
+                    }
+                }
+            }
+
+            if (aborted) {
+                return;
+            }
+
+            if (resourcePolicy != null) {
+                emitState(resourcePolicy.matchReport());
+            }
+
+            /* A write that failed after the last stage still fails the match */
+            if (!syncWrites()) {
+                return;
+            }
+
+            closeContext();
+
+            /* A failed match stays open in the journal, and its outputs where the next run can resume them */
+            closeOutputs(scraped);
+
+            if (!scraped) {
+                emitProgress(matchCntr, 1);
+                continue;
+            }
+
+            if (shooterIndex != null) {
+                shooterIndex.markMatch(match.url, divisionStr);
+            }
+
+            commitMatch(match);
+
+            metrics.matchCompleted();
+
+            /* The journal can get ahead of the saved index, prepareMatch redoes anything it's missing */
+            if (++unsavedMatches >= indexSaveInterval && !saveIndex()) {
+                cleanAbort("Unable to save shooter index.");
+                return;
+            }
+
+            /* The recording is only complete once its context has closed */
+            if (pageCache != null) {
+                try {
+                    pageCache.commit(match.url);
+                } catch (IOException e) {
+                    metrics.error("Page cache unavailable");
+                    emitState("Unable to save page to cache.");
+                }
+            }
+            emitProgress(matchCntr, 1);
+        }
+
+        /* A shared queue is reported on by whoever shares it */
+        if (ownsQueue && queue.report() != null) {
+            emitState(queue.report());
+        }
+
+        emitState(session.report());
+        emitState(readiness.report());
+
+        if (pageCache != null) {
+            emitState(pageCache.report());
+        }
+
+        if (resourcePolicy != null) {
+            emitState(resourcePolicy.report());
+        }
+
+        if (rowWriter != null) {
+            emitState(rowWriter.report());
+        }
+
+        /* Shared ones are reported on by whoever shares them */
+        if (ownsRecovery) {
+            emitState(breaker.report());
+            emitState(failureReport.report());
+        }
+
+        /* Timed up to now, run() ends the metrics once and for all on the way out */
+        emitState(metrics.getSummary());
+
+        /* We're done! */
+        finish();
+
+    }
+
+    /**
+     * One attempt at a match on a fresh context: loads the page and scrapes
+     * every stage not yet in finished, adding each one as it's written.
+     * Throws if the page or a stage can't be loaded.
+     */
+    private void scrapeMatch (Match match, int matchCntr, int totalMatches, Set<Integer> finished) {
+
+        int stageNum;
+
+        failedStage = 0;
+
+        /* Grab a fresh context on the shared browser and load the match page */
+        emitState("Launching browser.");
+        
+        long started = metrics.start();
+
+        boolean launching = !session.isOpen();
+
+        context = session.newContext();
+
+        metrics.stop(launching ? Phase.BROWSER_LAUNCH : Phase.NEW_CONTEXT, started);
+
+        if (rateLimiter != null) {
+            rateLimiter.attach(context);
+        }
+
+        /* Serve the page from the cache if we have it, otherwise record it */
+        if (pageCache != null) {
+            try {
+                if (pageCache.attach(context, match.url)) {
+                    emitState("Loading page from cache.");
+                }
+            } catch (IOException e) {
+                metrics.error("Page cache unavailable");
+                emitState("Unable to use page cache, loading live.");
+            }
+        }
+        
+        /* Registered last so it sees requests first, before the cache or rate limiter */
+        if (resourcePolicy != null) {
+            resourcePolicy.apply(context);
+        }
+
+        emitState("Loading page.");
+        
+        Page page = context.newPage();
+        
+        page.setDefaultTimeout(120000);
+
+        if (payloadMode) {
+            payload.attach(page);
+        }
+        
+        started = metrics.start();
+
+        page.navigate(match.url);
+
+        metrics.stop(Phase.NAVIGATE, started);
+        
+        /* Select the appropriate division and wait for the table to re-render */
+        selectDivision(page);
+    
+        /* Get number of stages */
+        int numStages = page.locator("#resultLevel").locator("option").count();
+
+        breaker.success();
+
+        List<String[][]> stageTables = null;
+
+        /* In payload mode, every stage comes out of the data the page already downloaded */
+        if (payloadMode) {
+
+            started = metrics.start();
+
+            stageTables = payload.stageTables(numStages);
+
+            metrics.stop(Phase.EXTRACT, started);
+
+            if (stageTables == null) {
+                reportFallback(match, "Results payload not recognised, falling back to the page.");
+            }
+        }
+
+        /* In snapshot mode, try to get every stage out of one capture of the page */
+        if (stageTables == null && snapshotMode) {
+
+            emitState("Capturing page snapshot.");
+
+            started = metrics.start();
+
+            stageTables = snapshotStages(page.content(), numStages);
+
+            metrics.stop(Phase.EXTRACT, started);
+
+            if (stageTables == null) {
+                reportFallback(match, "Snapshot is missing stages, falling back to stage-by-stage.");
+            }
+        }
+
+        /* Stage 0 contains match results (irrelevant), and stages finished in an earlier run or attempt are skipped */
+        List<Integer> pending = new ArrayList<>();
+
+        for(stageNum = 1; stageNum < numStages; stageNum++) {
+            if (!finished.contains(stageNum) && (journal == null || !journal.isStageDone(match.url, divisionStr, stageNum))) {
+                pending.add(stageNum);
+            }
+        }
+
+        /* Stages we have to select get spread over as many pages as we're allowed */
+        List<Page> pages = Collections.singletonList(page);
+
+        if (stageTables == null && stagePages > 1 && pending.size() > 1) {
+            pages = openStagePages(page, match.url, Math.min(stagePages, pending.size()));
+        }
+
+        /*
+         * Each round selects the next stage on every page, then collects
+         * them in stage order. The pages render side by side while we wait
+         * on the first, and the output is the same whatever the page count.
+         */
+        for (int first = 0; first < pending.size(); first += pages.size()) {
+
+            int round = Math.min(pages.size(), pending.size() - first);
+
+            String[] fingerprints = new String[round];
+
+            for (int idx = 0; idx < round && stageTables == null; idx++) {
+
+                /* Select the nth stage */
+                fingerprints[idx] = readiness.fingerprint(pages.get(idx));
+
+                started = metrics.start();
+
+                pages.get(idx).locator("#resultLevel").selectOption(Integer.toString(pending.get(first + idx)));
+
+                metrics.stop(Phase.STAGE_SELECT, started);
+            }
+
+            for (int idx = 0; idx < round; idx++) {
+
+                stageNum = pending.get(first + idx);
+
+                String[][] rows = (stageTables != null) ? stageTables.get(stageNum - 1)
+                                                        : collectStage(pages.get(idx), fingerprints[idx], stageNum);
+
+                started = metrics.start();
+
+                processStage(rows, stageNum, numStages, matchCntr, totalMatches);
+
+                metrics.stop(Phase.PROCESS, started);
+
+                if (aborted) {
+                    return;
+                }
+
+                started = metrics.start();
+
+                commitStage(match, stageNum);
+
+                metrics.stop(Phase.COMMIT, started);
+
+                /* A stop waits for the stage in hand to be committed, so the next run resumes after it */
+                if (stopped()) {
+                    return;
+                }
+
+                finished.add(stageNum);
+
+                metrics.stageCompleted();
+            }
+        }
+    }
+
+    /**
+     * Waits for a page to finish rendering the stage just selected on it and
+     * pulls the table across. A stage that doesn't load is retried after a
+     * reload of the page, and the last failure is thrown once the policy's
+     * attempts run out.
+     */
+    private String[][] collectStage (Page page, String fingerprint, int stageNum) {
+
+        for (int attempt = 1; ; attempt++) {
+
+            try {
+                String[][] rows = readStage(page, fingerprint);
+
+                breaker.success();
+
+                return rows;
+
+            } catch (RuntimeException e) {
+
+                breaker.failure();
+                metrics.error("Stage attempt failed");
+
+                if (attempt >= retryPolicy.getStageAttempts()) {
+                    failedStage = stageNum;
+                    throw e;
+                }
+
+                long wait = retryPolicy.backoffMillis(attempt);
+
+                emitState(String.format("Stage %d failed (%s), reloading in %d ms.", stageNum, describe(e), wait));
+
+                if (!pause(wait) || !awaitBreaker()) {
+                    throw e;
+                }
+
+                fingerprint = reloadStage(page, stageNum);
+            }
+        }
+    }
+
+    private String[][] readStage (Page page, String fingerprint) {
+
+        awaitTable(page, fingerprint);
+                    
+        /* Wait for the results table to load, and grab the row count, rows, and max score for the stage */
+        emitState("Searching for results table. . .");
+
+        long started = metrics.start();
+
+        page.waitForSelector("#mainResultsTable",
+                             new Page.WaitForSelectorOptions().setTimeout(retryPolicy.getTableTimeout()));
+
+        metrics.stop(Phase.TABLE_WAIT, started);
+        
+        Locator table = page.locator("#mainResultsTable");
+        
+        /* Pull the whole table across in one round-trip and work on the snapshot */
+        started = metrics.start();
+
+        String[][] rows = extractTable(table);
+
+        metrics.stop(Phase.EXTRACT, started);
+
+        return rows;
+    }
+
+    /* Reloads a page and selects the division and stage on it again, returning the fingerprint to wait on */
+    private String reloadStage (Page page, int stageNum) {
+
+        long started = metrics.start();
+
+        page.reload();
+
+        metrics.stop(Phase.NAVIGATE, started);
+
+        selectDivision(page);
+
+        String fingerprint = readiness.fingerprint(page);
+
+        page.locator("#resultLevel").selectOption(Integer.toString(stageNum));
+
+        return fingerprint;
+    }
+
+    /* Holds the scraper while the breaker is open. False if it was interrupted, which aborts the run. */
+    private boolean awaitBreaker () {
+
+        if (breaker.isOpen()) {
+
+            emitState(String.format("Site looks degraded, pausing for %d s.", breaker.remainingMillis() / 1000));
+
+            /* Sit out the cool-down where a stop can cut it short */
+            if (!pause(breaker.remainingMillis())) {
+                return false;
+            }
+        }
+
+        try {
+            breaker.await();
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cleanAbort("Scrape interrupted.");
+            return false;
+        }
+    }
+
+    /* Sleeps out a backoff. False if stopped or interrupted, which aborts the run. */
+    private boolean pause (long millis) {
+
+        long until = System.currentTimeMillis() + millis;
+
+        try {
+            synchronized (cancelLock) {
+                for (long left = millis; left > 0 && !cancelled; left = until - System.currentTimeMillis()) {
+                    cancelLock.wait(left);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cleanAbort("Scrape interrupted.");
+            return false;
+        }
+
+        return !stopped();
+    }
+
+    /**
+     * Asks the scraper to stop, from any thread, without waiting for it.
+     * The stage in hand is finished and committed, then the scraper closes
+     * its outputs on its own thread and reports ABORTED. The next run picks
+     * the match up from there.
+     */
+    public void cancel () {
+
+        synchronized (cancelLock) {
+            cancelled = true;
+            cancelLock.notifyAll();
+        }
+    }
+
+    /* Acts on a cancel(), true once the run is over either way */
+    private boolean stopped () {
+
+        if (cancelled) {
+            cleanAbort("Scrape stopped.");
+        }
+
+        return aborted;
+    }
+
+    /* The gist of an exception. Playwright's wrap the message in "Error {" and run on to a whole call log. */
+    static String describe (Throwable e) {
+
+        if (e.getMessage() == null) {
+            return e.getClass().getSimpleName();
+        }
+
+        for (String line : e.getMessage().split("\n")) {
+
+            line = line.trim();
+
+            if (line.isEmpty() || line.endsWith("{")) {
+                continue;
+            }
+
+            if (line.startsWith("message='")) {
+                line = line.substring("message='".length());
+            }
+
+            return (line.length() > 200) ? line.substring(0, 200) : line;
+        }
+
+        return e.getClass().getSimpleName();
+    }
+
+    /**
+     * The match page plus count-1 more on the same context, each showing the
+     * right division. The extra pages start loading together rather than one
+     * after the other.
+     */
+    private List<Page> openStagePages (Page page, String url, int count) {
+
+        emitState(String.format("Opening %d more page(s) for stages.", count - 1));
+
+        List<Page> pages = new ArrayList<>();
+
+        pages.add(page);
+
+        long started = metrics.start();
+
+        for (int idx = 1; idx < count; idx++) {
+
+            Page extra = context.newPage();
+
+            extra.setDefaultTimeout(120000);
+            extra.navigate(url, new Page.NavigateOptions().setWaitUntil(WaitUntilState.COMMIT));
+
+            pages.add(extra);
+        }
+
+        for (int idx = 1; idx < count; idx++) {
+            pages.get(idx).waitForLoadState();
+        }
+
+        metrics.stop(Phase.NAVIGATE, started);
+
+        for (int idx = 1; idx < count; idx++) {
+            selectDivision(pages.get(idx));
+        }
+
+        return pages;
+    }
+
+    /**
+     * Filters, validates and writes one stage's worth of rows. Both the
+     * stage-by-stage and snapshot paths come through here, so they produce
+     * identical output.
+     */
+    void processStage (String[][] rows, int stageNum, int numStages, int matchCntr, int totalMatches) {
+
+        /* The max score is contained in the Stage Points field for the top scorer */
+        double maxPoints = Double.parseDouble(cellText(rows, 1, MAXPTS_IDX));
+
+        /* The overall table's percentages are against the overall winner, so ALL mode works out each division's own */
+        Map<String, Double> topHitFactors = allDivisions ? divisionTopHitFactors(rows) : null;
+
+        int rowCount   = rows.length;
+
+        float rowCountf;
+        float numStagesf;
+
+        boolean valid;
+
+        /* Scrape the row data and write it to file */
+        for(int idx = 0; idx < rowCount-1; idx++) {
+
+            emitStatus("Capturing shooter %d/%d in Stage %d/%d (Match %d/%d)", idx+1, rowCount-1, stageNum, numStages-1, matchCntr+1, totalMatches);
+
+            /* A failed write has already torn everything down */
+            if (aborted) {
+                return;
+            }
+
+            /* The first row has nothing in it. */
+            int rowIdx = idx+1;
+
+            valid = false;
+
+            String divText = cellText(rows, rowIdx, DIV_IDX);
+
+            RowSink sink = fwriter;
+
+            if (allDivisions) {
+
+                /* Route the shooter to its division's file, dropping anything we don't know */
+                String divCode = divisionCode(divText);
+
+                if (divCode == null) {
+                    shootersProcessed++;
+                    continue;
+                }
+
+                sink = divisionSink(divCode);
+
+            /* Throw out overall results and shooters not in the selected division, by exact code so L doesn't take LO */
+            } else if (division == 0 || !divisionStr.equals(divisionCode(divText))) {
+                shootersProcessed++;
+                continue;
+            }
+
+            valid = parseMetrics(rows, rowIdx, maxPoints, rowBuf);
+
+            if (valid && allDivisions) {
+                rowBuf[PSBL_COL] = divisionPercent(rowBuf[HF_COL], topHitFactors.get(divisionCode(divText)));
+            }
+
+            /* Write the data and update the progress bar */
+            if(valid) {
+                writeMetricData(sink, rowBuf, metricsIndices.length);
+
+                if (featureOutput) {
+                    writeFeatures(rowBuf, metricsIndices.length, divisionCode(divText));
+                }
+
+                if (shooterIndex != null && currentMatch != null) {
+                    shooterIndex.add(currentMatch.url, stageNum, divisionCode(divText),
+                                     cellText(rows, rowIdx, MEMBER_IDX), cellText(rows, rowIdx, NAME_IDX), rowBuf);
+                }
+            }
+
+            shootersProcessed++;
+
+            rowCountf  = (float) rowCount;
+            numStagesf = (float) numStages - 1;
+
+            emitProgress(matchCntr, shootersProcessed/(numStagesf*rowCountf));
+        }
+    }
+
+    /**
+     * Best hit factor of each division in a stage table. A single division
+     * table takes its percentages against these, and its max points are the
+     * same as the overall table's, since each division's winner scores them.
+     */
+    static Map<String, Double> divisionTopHitFactors (String[][] rows) {
+
+        Map<String, Double> top = new HashMap<>();
+
+        for (int rowIdx = 1; rowIdx < rows.length; rowIdx++) {
+
+            String divCode = divisionCode(cellText(rows, rowIdx, DIV_IDX));
+            String hfText  = cellText(rows, rowIdx, HF_IDX);
+
+            if (divCode == null || hfText == null) {
+                continue;
+            }
+
+            try {
+                double hf = Double.parseDouble(hfText);
+                if (hf > 0 && hf > top.getOrDefault(divCode, 0.0)) {
+                    top.put(divCode, hf);
+                }
+            } catch (NumberFormatException nfe) {
+                /* Rejected by parseMetrics anyway */
+            }
+        }
+
+        return top;
+    }
+
+    /* Stage percentage against a division's top hit factor, to the two places the results page shows */
+    static double divisionPercent (double hf, Double topHf) {
+
+        if (topHf == null || topHf <= 0) {
+            return 0;
+        }
+
+        return Math.round(hf / topHf * 10000) / 100.0;
+    }
+
+    /* Short code for a division cell, or null if it isn't a division we know */
+    static String divisionCode (String divText) {
+
+        return (divText == null) ? null : DIVISION_CODES.get(divText.trim());
+    }
+
+    /**
+     * Validates one shooter's cells and fills row with their metrics, in
+     * metricsIndices order. Each cell is parsed once, straight into the
+     * primitive row, and the shooter is rejected on the first bad cell.
+     */
+    boolean parseMetrics (String[][] rows, int rowIdx, double maxPoints, double[] row) {
+
+        for (int col = 0; col < metricsIndices.length; col++) {
+
+            int    cellIdx  = metricsIndices[col];
+            String cellText = cellText(rows, rowIdx, cellIdx);
+
+            double value;
+
+            /* Null row protection */
+            if (cellText == null) {
+                return false;
+            }
+
+            try {
+                value = Double.parseDouble(cellText);
+            } catch (NumberFormatException nfe) {
+                return false;
+            }
+
+            /* 0 HF Rejection */
+            if(cellIdx == PSBL_IDX && value <= 0) {
+                return false;
+            }
+
+            /* Chrono Station Rejection */
+            if(cellIdx == PTS_IDX && value <= 0 ) {
+                return false;
+            }
+
+            /* Unfortunately we must throw out time limited stages since PS doesn't record their time */
+            if(cellIdx == TIME_IDX && value <= 0 ) {
+                return false;
+            }
+
+            /* Max points is constant for every shooter, the other metrics are not. */
+            row[col] = (cellIdx == MAXPTS_IDX) ? maxPoints : value;
+        }
+
+        return true;
+    }
+
+    /**
+     * Records a fast path giving way to a slower one, once per match however
+     * many attempts it takes. Each one counts as an error in the metrics
+     * summary, so a page layout change shows up without reading the log.
+     */
+    private void reportFallback (Match match, String message) {
+
+        if (fallbacks.add(message)) {
+            metrics.error(message);
+            emitState(String.format("%s (%s)", message, match.url));
+        }
+    }
+
+    /**
+     * Pulls the per-stage results tables out of a captured page. A table
+     * counts as a results table if any of its rows reaches the last metric
+     * column. If the page also carries the match-level table it comes first
+     * and is dropped. Returns null when the capture doesn't hold one table
+     * per stage, in which case the caller should select stages one by one.
+     */
+    static List<String[][]> snapshotStages (String html, int numStages) {
+
+        List<String[][]> results = new ArrayList<>();
+
+        for (String[][] table : ResultsHtmlParser.parseTables(html)) {
+            for (String[] row : table) {
+                if (row.length > PROC_IDX) {
+                    results.add(table);
+                    break;
+                }
+            }
+        }
+
+        if (results.size() == numStages) {
+            results.remove(0);
+        }
+
+        if (numStages < 2 || results.size() != numStages - 1) {
+            return null;
+        }
+
+        return results;
+    }
+
+    public void addStateHandler (StateHandler stateHandler) {
+        events.addStateHandler(stateHandler, null);
+    }
+
+    public void addProgressHandler (ProgressHandler progressHandler) {
+        events.addProgressHandler(progressHandler, null);
+    }
+
+    public void addLifecycleHandler (LifecycleHandler lifecycleHandler) {
+        events.addLifecycleHandler(lifecycleHandler, null);
+    }
+
+    /* Handlers registered with an executor run there, e.g. EventQueue::invokeLater for Swing */
+    public void addStateHandler (StateHandler stateHandler, Executor executor) {
+        events.addStateHandler(stateHandler, executor);
+    }
+
+    public void addProgressHandler (ProgressHandler progressHandler, Executor executor) {
+        events.addProgressHandler(progressHandler, executor);
+    }
+
+    public void addLifecycleHandler (LifecycleHandler lifecycleHandler, Executor executor) {
+        events.addLifecycleHandler(lifecycleHandler, executor);
+    }
+
+    public void setHeadlessState(boolean state) {
+        this.headless = state;
+    }
+
+    /* Parse every stage from one capture of the page instead of selecting each in turn */
+    public void setSnapshotMode(boolean snapshotMode) {
+        this.snapshotMode = snapshotMode;
+    }
+
+    public void setShooterIndex(ShooterIndex shooterIndex) {
+        setShooterIndex(shooterIndex, null);
+    }
+
+    public void setShooterIndex(ShooterIndex shooterIndex, File indexFile) {
+        this.shooterIndex = shooterIndex;
+        this.indexFile    = indexFile;
+    }
+
+    /* Matches finished between saves of the index, 1 saves after every one */
+    public void setIndexSaveInterval(int matches) {
+        this.indexSaveInterval = Math.max(1, matches);
+    }
+
+    /* Pages to select stages on at once within a match, 1 goes stage by stage */
+    public void setStagePages(int stagePages) {
+        this.stagePages = Math.max(1, stagePages);
+    }
+
+    public void setPayloadMode(boolean payloadMode) {
+        this.payloadMode = payloadMode;
+    }
+
+    /* Where finished stages are recorded. Null turns resuming off. */
+    public void setJournalFile(File journalFile) {
+        this.journalFile = journalFile;
+    }
+
+    /* Use a journal that other scrapers are writing too, instead of opening our own */
+    public void setJournal(ScrapeJournal journal) {
+        this.sharedJournal = journal;
+    }
+
+    public void setRateLimiter(RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    /* Scrape matches again even if the journal says they're done */
+    public void setForceRefresh(boolean forceRefresh) {
+        this.forceRefresh = forceRefresh;
+    }
+
+    public void setPageCache(HarCache pageCache) {
+        this.pageCache = pageCache;
+    }
+
+    public void setResourcePolicy(ResourcePolicy resourcePolicy) {
+        this.resourcePolicy = resourcePolicy;
+    }
+
+    public void setOutputFormat(OutputFormat outputFormat) {
+        this.outputFormat = outputFormat;
+    }
+
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+
+    /* Share one between scrapers so they all back off together */
+    public void setCircuitBreaker(CircuitBreaker breaker) {
+        this.breaker      = breaker;
+        this.ownsRecovery = false;
+    }
+
+    public void setFailureReport(FailureReport failureReport) {
+        this.failureReport = failureReport;
+        this.ownsRecovery  = false;
+    }
+
+    public FailureReport getFailureReport() {
+        return failureReport;
+    }
+
+    public void setWriteQueue(int writeQueue) {
+        this.writeQueue = Math.max(0, writeQueue);
+    }
+
+    public void setFeatureOutput(boolean featureOutput) {
+        this.featureOutput = featureOutput;
+    }
+
+    /* Upper bound on how long to wait for the table to re-render after a selection */
+    public void setReadinessTimeout(long millis) {
+        readiness.setMaxWaitMillis(millis);
+    }
 
+    public TableReadiness getReadiness() {
+        return readiness;
+    }
 
-    private int division     = 1;
+    public ScrapeMetrics getMetrics() {
+        return metrics;
+    }
 
-    public boolean headless = true;
+    /**
+     * Shows the division being scraped. Pages open on overall, so selecting
+     * that has no re-render to wait for, only the table being drawn at all,
+     * which has to happen before its stages can be counted.
+     */
+    private void selectDivision (Page page) {
 
-    private File logFile;
-    public  FileWriter fwriter;
+        String fingerprint = readiness.fingerprint(page);
 
-    private String divisionStr;
-    private String fullDivName;
-
-    private Browser browser;
-
-    private List<ProgressHandler> progressHandlers;
-    private List<StateHandler>    stateHandlers;
-
-    private final int PSBL_IDX   = 1;
-    private final int MAXPTS_IDX = 2;
-    private final int PTS_IDX    = 3;
-    private final int HF_IDX     = 4;
-    private final int TIME_IDX   = 5;
-    private final int DIV_IDX    = 6;
-    private final int A_IDX      = 11;
-    private final int B_IDX      = 12;
-    private final int C_IDX      = 13;
-    private final int D_IDX      = 14;
-    private final int M_IDX      = 15;
-    private final int NPM_IDX    = 16;
-    private final int NS_IDX     = 17;
-    private final int PROC_IDX   = 18;
-
-    private List<Integer> metricsIndices;
-    private List<Double> metrics;
-    private List<Match>  matches;
-            
-    public PractiScoreScraper (List<Match> matches, String division, boolean headless) {
-        
-        this.headless    = headless;
-        this.divisionStr = division;
-        this.matches     = matches;
+        long started = metrics.start();
 
-        progressHandlers = new ArrayList<>();
-        stateHandlers    = new ArrayList<>();
-        metrics          = new ArrayList<>();
+        page.locator("#divisionLevel").selectOption(Integer.toString(division));
 
-        populateMetricIndices();
+        metrics.stop(Phase.DIVISION_SELECT, started);
 
-        detectDivision ();
+        awaitTable(page, (division != 0) ? fingerprint : "");
     }
-    
-    @Override
-    public void run () {
 
-        int totalMatches = matches.size();
-
-        /* Do the PlayWright Magic */
-        emitProgress(0);
+    /**
+     * Waits out the re-render after a selection. Past the readiness cap a
+     * slow page gets the rest of the table timeout to settle. A table that
+     * still hasn't changed then fails the attempt, since what's showing is
+     * the previous one and its rows would be read as the new stage's.
+     */
+    private void awaitTable (Page page, String fingerprint) {
 
-        for(int matchCntr = 0; matchCntr < totalMatches; matchCntr++) {
+        int timeouts = readiness.getTimeouts();
 
-            Match match = matches.get(matchCntr);
+        long started = metrics.start();
 
-            float shootersProcessed = 0;
+        long waited = readiness.awaitChange(page, fingerprint);
 
-            int stageNum;
-            
-            /* Create the log file */
-            createLogFile(match.fileName);
-            
-            emitState("Log file created.");
-            
-            /* Launch the browser and load the match page */
-            Playwright pWright = Playwright.create();
-            
-            emitState("Launching browser.");
-            
-            browser = pWright.firefox().launch(new BrowserType.LaunchOptions().setHeadless(headless));
-            
-            emitState("Loading page.");
-            
-            Page page = browser.newPage();
-            
-            page.setDefaultTimeout(120000);
-            
-            page.navigate(match.url);
-            
-            /* Select the appropriate division */
-            page.locator("#divisionLevel").selectOption(Integer.toString(division));
+        if (readiness.getTimeouts() > timeouts) {
 
-            delay(5);
-        
-            /* Get number of stages */
-            int numStages = page.locator("#resultLevel").locator("option").count();
-    
-            /* Loop over stages collecting data. Stage 0 contains match results (irrelevant) */
-            for(stageNum = 1; stageNum < numStages; stageNum++) {
-    
-                /* Select the nth stage */
-                page.locator("#resultLevel").selectOption(Integer.toString(stageNum));
+            emitState(String.format("Results table slow to render, waiting up to %d ms more.", retryPolicy.getTableTimeout()));
 
-                delay(5);
-                
-                /* Wait for the results table to load, and grab the row count, rows, and max score for the stage */
-                emitState("Searching for results table. . .");
-                /* Wait up to 2 minutes to find the table. */
-                try {
-                    page.waitForSelector("#mainResultsTable", 
-                                            new Page.WaitForSelectorOptions().setTimeout(120000));
-                } catch (Exception e) {
-                    cleanAbort("Timed out acquiring data.");
-                }
-    
-                Locator table = page.locator("#mainResultsTable");
-    
-                Locator rows = table.locator("tr");
-    
-                /* The max score is contained in the Stage Points field for the top scorer */
-                double maxPoints = Double.parseDouble(rows.nth(1).locator("td").nth(MAXPTS_IDX).textContent());
+            waited += readiness.awaitChange(page, fingerprint, retryPolicy.getTableTimeout());
+        }
 
-                int rowCount   = rows.count();
-    
-                float rowCountf;
-                float numStagesf;
-    
-                boolean valid;
-                
-                /* Scrape the row data and write it to file */
-                for(int idx = 0; idx < rowCount-1; idx++) {
-    
-                    emitState(String.format("Capturing shooter %d/%d in Stage %d/%d (Match %d/%d)", idx+1, rowCount-1, stageNum, numStages-1, matchCntr+1, totalMatches));
-    
-                    metrics.clear();
-    
-                    /* The first row has nothing in it. */
-                    Locator row = rows.nth(idx+1);
-    
-                    Locator cells = row.locator("td");
-    
-                    valid = false;
-    
-                    /* Throw out shooters not in the selected division and overall results */
-                    if (!cells.nth(DIV_IDX).textContent().contains(fullDivName) || division == 0) {
-                        shootersProcessed++;
-                        continue;
-                    }
-    
-                    for (int cellIdx : metricsIndices) {
-    
-                        String cellText = cells.nth(cellIdx).textContent();
-    
-                        valid = false;
-                        
-                        /* Null row protection */
-                        if(!isNumeric(cellText)){
-                            break;
-                        }
-    
-                        /* 0 HF Rejection */
-                        if(cellIdx == PSBL_IDX && Double.parseDouble(cellText) <= 0) {
-                            break;
-                        }
-    
-                        /* Chrono Station Rejection */
-                        if(cellIdx == PTS_IDX && Double.parseDouble(cellText) <= 0 ) {
-                            break;
-                        }
-    
-                        /* Unfortunately we must throw out time limited stages since PS doesn't record their time */
-                        if(cellIdx == TIME_IDX && Double.parseDouble(cellText) <= 0 ) {
-                            break;
-                        }
-    
-                        /* Max points is constant for every shooter, the other metrics are not. */
-                        if (cellIdx == MAXPTS_IDX) {
-                            metrics.add(maxPoints);
-                        } else {
-                            metrics.add(Double.valueOf(cellText));
-                        }
-    
-                        valid = true;
-    
-                    }
-    
-                    /* Write the data and update the progress bar */
-                    if(valid) {
-                        writeMetricData(metrics);
-                    }
-    
-                    shootersProcessed++;
-    
-                    rowCountf  = (float) rowCount;
-                    numStagesf = (float) numStages - 1;
-    
-                    emitProgress(Math.round((shootersProcessed/(numStagesf*rowCountf))*100));
-                }
-            }
+        metrics.stop(Phase.READINESS_WAIT, started);
 
-            browser.close();
-            closeLogFile();
-            emitProgress(100);
+        if (readiness.getTimeouts() > timeouts + 1) {
+            metrics.error("Table did not settle");
+            throw new TimeoutError(String.format("Results table didn't change within %d ms.", waited));
         }
+    }
 
-        /* We're done! */
-        cleanAbort("COMPLETE");
+    /* Progress is reported for the whole run, with this match fraction done */
+    private void emitProgress (int matchCntr, float fraction) {
+
+        events.publishProgress(queue.progress(matchCntr, fraction));
 
     }
 
-    public void addStateHandler (StateHandler stateHandler) {
-        stateHandlers.add(stateHandler);
+    private void emitState (String msg) {
+
+        events.publishState(new StateEvt(msg));
     }
 
-    public void addProgressHandler (ProgressHandler progressHandler) {
-        progressHandlers.add(progressHandler);
+    /* Frequent status updates. Only the latest is guaranteed to be seen, and it's formatted on demand. */
+    private void emitStatus (String format, Object... args) {
+
+        events.publishState(new StateEvt(true, format, args));
     }
 
-    public void setHeadlessState(boolean state) {
-        this.headless = state;
+    /**
+     * Creates the log file for a match. Every output is named after the
+     * match and the division, <match>_<DIV>, so passes over different
+     * divisions never write into each other's files. Per-division files in
+     * ALL mode are opened as rows arrive.
+     */
+    void openOutputs (Match match) {
+
+        matchFileName = match.fileName;
+
+        if (!allDivisions) {
+            fwriter = createLogFile(String.format("%s_%s", matchFileName, divisionStr));
+        }
     }
 
-    private void emitProgress (int progress) {
+    private RowSink createLogFile (String fileName) {
+
+        RowSink writer = null;
 
-        ProgressEvt pEvt = new ProgressEvt(progress);
+        logFile = new File(String.format("./%s%s", fileName, outputFormat.extension));
 
-        for (ProgressHandler pHandler : progressHandlers) {
-            pHandler.handleProgressEvt(pEvt);
+        /* New files get the header, existing ones are appended to if their header matches */
+        try {
+            if (outputFormat == OutputFormat.COLUMNAR) {
+                /* Holds this match alone, so it's only ever picked up again from its spill, with a journal to vouch for it */
+                writer = new ColumnarDatasetWriter(logFile, false, journal != null);
+            } else {
+                writer = new CsvRowWriter(logFile, true, outputFormat == OutputFormat.GZIP);
+            }
+        } catch (IOException e) {
+            cleanAbort("Unable to create log file.");
+            return null;
         }
 
+        registerSink(logFile, writer);
+
+        return writer;
     }
 
-    private void emitState (String msg) {
+    /* Tracks a freshly opened output for the current match */
+    private void registerSink (File file, RowSink writer) {
+
+        /* Columnar outputs resume from their spill, so that's the file the journal cuts back */
+        if (writer instanceof ColumnarDatasetWriter) {
+            file = ((ColumnarDatasetWriter) writer).getSpillFile();
+        }
 
-        StateEvt sEvt = new StateEvt(msg);
+        matchSinks.put(file.getPath(), writer);
 
-        for (StateHandler sHandler : stateHandlers) {
-            sHandler.handleStateEvt(sEvt);
+        /* Note where this output started, so a failed match can be rolled back */
+        if (journal != null) {
+            try {
+                journal.fileOpened(currentMatch.url, divisionStr, file.getPath(), writer.commit());
+            } catch (IOException e) {
+                cleanAbort("Unable to update journal.");
+            }
         }
     }
 
-    private void createLogFile (String fileName) {
+    /* Adds a shooter to the match's feature matrix, opening it with the first row */
+    private void writeFeatures (double[] row, int len, String divCode) {
 
-        logFile = new File(String.format("./%s.csv", fileName));
+        if (featureWriter == null) {
+
+            File file = new File(String.format("./%s_%s_features%s", matchFileName, divisionStr, OutputFormat.COLUMNAR.extension));
 
-        if(!logFile.exists()) {
             try {
-                if(!logFile.createNewFile()) {
-                    cleanAbort("Unable to create log file.");
-                }
-            } catch (Exception e) {
-                cleanAbort("Unable to create log file.");
+                featureWriter = new FeatureWriter(file, journal != null);
+            } catch (IOException e) {
+                cleanAbort("Unable to create feature file.");
+                return;
             }
 
-            /* The log file is new, write the header */
+            registerSink(file, featureWriter);
+        }
+
+        long started = metrics.start();
+
+        try {
+            enqueue(featureWriter, row, len, divCode);
+
+            metrics.stop(Phase.WRITE, started);
+
+        } catch (IOException e) {
+            cleanAbort("Failed to write features to file.");
+        }
+    }
+
+    /* Per-division output for the current match, opened the first time that division shows up */
+    private RowSink divisionSink (String divCode) {
+
+        RowSink writer = divisionWriters.get(divCode);
+
+        if (writer == null) {
+            writer = createLogFile(String.format("%s_%s", matchFileName, divCode));
+            divisionWriters.put(divCode, writer);
+        }
+
+        return writer;
+    }
+
+    /**
+     * Closes the match output, including every per-division file.
+     */
+    public void closeLogFile () {
+        closeOutputs(true);
+    }
+
+    /**
+     * Closes every output of the current match. Unless the match finished
+     * they are only suspended, so columnar ones keep their spills for the
+     * next run to resume rather than being built from part of the match.
+     */
+    private void closeOutputs (boolean finished) {
+
+        /* Anything still queued goes out before its file is closed */
+        if (rowWriter != null) {
             try {
-                fwriter = new FileWriter(logFile);
+                rowWriter.sync();
+            } catch (IOException e) {
+            }
+        }
+
+        try {
+            if (fwriter != null) {
+                close(fwriter, finished);
+            }
+        } catch (Exception e) {
+        }
 
-                fwriter.write("%psbl,MaxPoints,Points,HF,Time,A,B,C,D,M,NPM,NS,Proc\n");
+        fwriter = null;
 
+        for (RowSink writer : divisionWriters.values()) {
+            try {
+                if (writer != null) {
+                    close(writer, finished);
+                }
             } catch (Exception e) {
-                cleanAbort("Unable to create log file.");
             }
+        }
+
+        divisionWriters.clear();
+
+        /* Scaled and written out with its stats sidecar here */
+        try {
+            if (featureWriter != null) {
+                close(featureWriter, finished);
+            }
+        } catch (Exception e) {
+        }
+
+        featureWriter = null;
+
+        matchSinks.clear();
+    }
+
+    private static void close (RowSink writer, boolean finished) throws IOException {
+
+        if (finished) {
+            writer.close();
         } else {
+            writer.suspend();
+        }
+    }
 
-            /* The file exists. Append to it. */
-            try {
-                fwriter = new FileWriter(logFile);
-            } catch (IOException e) {
-                cleanAbort("Failed to write entry to file.");
+    private void openJournal () {
+
+        journal = sharedJournal;
+
+        if (journal != null || journalFile == null) {
+            return;
+        }
+
+        try {
+            journal = new ScrapeJournal(journalFile);
+        } catch (IOException e) {
+            emitState("Unable to open journal, progress will not be saved.");
+        }
+    }
+
+    /**
+     * Gets the outputs of a match ready against the journal. Returns false
+     * if the match was finished in an earlier run and should be skipped.
+     * Otherwise any partly written stage is cut back off its outputs, or
+     * with force refresh, everything the match wrote before is.
+     */
+    private boolean prepareMatch (Match match) {
+
+        if (journal == null) {
+            return true;
+        }
+
+        try {
+            if (forceRefresh) {
+                if (journal.hasProgress(match.url, divisionStr)) {
+                    journal.reset(match.url, divisionStr, true);
+                }
+                return true;
+            }
+
+            if (journal.isMatchDone(match.url, divisionStr)) {
+
+                /* The index is saved every few matches, so one that finished after its last save is redone to fill it in */
+                if (shooterIndex == null || shooterIndex.hasMatch(match.url, divisionStr)) {
+                    return false;
+                }
+
+                journal.reset(match.url, divisionStr, true);
+                return true;
             }
+
+            /* The index only has matches that finished, so one resumed part way would be missing its early stages */
+            if (shooterIndex != null) {
+                if (journal.hasProgress(match.url, divisionStr)) {
+                    journal.reset(match.url, divisionStr, true);
+                }
+                return true;
+            }
+
+            journal.rollBack(match.url, divisionStr);
+
+        } catch (IOException e) {
+            cleanAbort("Unable to update journal.");
         }
+
+        return true;
     }
 
-    private void closeLogFile () {
+    /* Makes the stage's rows durable and records how far each output got */
+    private void commitStage (Match match, int stageNum) {
+
+        /* Offsets are only worth recording once the stage's rows are all out */
+        if (journal == null || !syncWrites()) {
+            return;
+        }
+
+        Map<String, Long> offsets = new LinkedHashMap<>();
+
         try {
-            fwriter.close();
-        } catch (Exception e) {
+            for (Map.Entry<String, RowSink> entry : matchSinks.entrySet()) {
+                offsets.put(entry.getKey(), entry.getValue().commit());
+            }
+
+            journal.stageDone(match.url, divisionStr, stageNum, offsets);
+
+        } catch (IOException e) {
+            cleanAbort("Unable to update journal.");
+        }
+    }
+
+    /* Writes out the matches finished since the last save. False if the index couldn't be written. */
+    private boolean saveIndex () {
+
+        if (shooterIndex == null || indexFile == null || unsavedMatches == 0) {
+            return true;
+        }
+
+        try {
+            shooterIndex.save(indexFile);
+            unsavedMatches = 0;
+            return true;
+        } catch (IOException e) {
+            metrics.error("Unable to save shooter index.");
+            return false;
+        }
+    }
+
+    private void commitMatch (Match match) {
+
+        if (journal == null) {
+            return;
+        }
+
+        try {
+            journal.matchDone(match.url, divisionStr);
+        } catch (IOException e) {
+            cleanAbort("Unable to update journal.");
         }
     }
 
     private void populateMetricIndices () {
-        metricsIndices = new ArrayList<>();
-
-        metricsIndices.add(PSBL_IDX);
-        metricsIndices.add(MAXPTS_IDX);
-        metricsIndices.add(PTS_IDX);
-        metricsIndices.add(HF_IDX);
-        metricsIndices.add(TIME_IDX);
-        metricsIndices.add(A_IDX);
-        metricsIndices.add(B_IDX);
-        metricsIndices.add(C_IDX);
-        metricsIndices.add(D_IDX);
-        metricsIndices.add(M_IDX);
-        metricsIndices.add(NPM_IDX);
-        metricsIndices.add(NS_IDX);
-        metricsIndices.add(PROC_IDX);
+        metricsIndices = new int[] {
+            PSBL_IDX,
+            MAXPTS_IDX,
+            PTS_IDX,
+            HF_IDX,
+            TIME_IDX,
+            A_IDX,
+            B_IDX,
+            C_IDX,
+            D_IDX,
+            M_IDX,
+            NPM_IDX,
+            NS_IDX,
+            PROC_IDX
+        };
     }
 
     private void detectDivision () {
@@ -333,37 +1532,36 @@ public class PractiScoreScraper implements Runnable {
 
             case ("CO"):
                 division = 1;
-                fullDivName = "Carry Optics";
                 break;
 
             case ("L"):
                 division = 2;
-                fullDivName = "Limited";
                 break;
 
             case ("LO"):
                 division = 3;
-                fullDivName = "Limited Optics";
                 break;
 
             case ("O"):
                 division = 4;
-                fullDivName = "Open";
                 break;
 
             case ("PCC"):
                 division = 5;
-                fullDivName = "PCC";
                 break;
 
             case ("P"):
                 division = 6;
-                fullDivName = "Production";
                 break;
 
             case ("SS"):
                 division = 7;
-                fullDivName = "Single Stack";
+                break;
+
+            /* Every division, loaded from the overall results */
+            case ("ALL"):
+                division     = 0;
+                allDivisions = true;
                 break;
 
             /* Overall */
@@ -375,62 +1573,158 @@ public class PractiScoreScraper implements Runnable {
 
     }
 
-    private boolean isNumeric(String strNum) {
-        
-        if (strNum == null) {
-            return false;
+    /**
+     * Grabs every row of the results table as a 2D array of cell text in a
+     * single evaluate call, rather than one browser round-trip per cell.
+     * Rows with no td cells (the header) come back as empty arrays.
+     */
+    @SuppressWarnings("unchecked")
+    private String[][] extractTable (Locator table) {
+
+        List<List<Object>> raw = (List<List<Object>>) table.evaluate(
+            "t => Array.from(t.querySelectorAll('tr')).map(r => " +
+            "Array.from(r.querySelectorAll('td')).map(c => c.textContent))");
+
+        String[][] rows = new String[raw.size()][];
+
+        for (int rowIdx = 0; rowIdx < raw.size(); rowIdx++) {
+
+            List<Object> rawRow = raw.get(rowIdx);
+
+            rows[rowIdx] = new String[rawRow.size()];
+
+            for (int cellIdx = 0; cellIdx < rawRow.size(); cellIdx++) {
+                Object cell = rawRow.get(cellIdx);
+                rows[rowIdx][cellIdx] = (cell == null) ? null : cell.toString();
+            }
+        }
+
+        return rows;
+    }
+
+    /* Bounds-safe cell lookup on a table snapshot. Missing cells come back null. */
+    static String cellText (String[][] rows, int rowIdx, int cellIdx) {
+
+        if (rowIdx >= rows.length || cellIdx >= rows[rowIdx].length) {
+            return null;
         }
+
+        return rows[rowIdx][cellIdx];
+    }
+
+    private void writeMetricData(RowSink writer, double[] row, int len) {
+
+        long started = metrics.start();
+
         try {
-            double d = Double.parseDouble(strNum);
-        } catch (NumberFormatException nfe) {
-            return false;
+            enqueue(writer, row, len, null);
+
+            metrics.stop(Phase.WRITE, started);
+            metrics.rowWritten();
+
+        } catch (IOException e) {
+            cleanAbort("Failed to write entry to file.");
         }
-        return true;
+
     }
 
-    private void writeMetricData(List<Double> metrics) {
+    /* Hands the row to the writer thread, or writes it here if there isn't one */
+    private void enqueue (RowSink sink, double[] row, int len, String division) throws IOException {
+
+        if (rowWriter != null) {
+            rowWriter.write(sink, row, len, division);
+        } else {
+            sink.writeRow(row, len, division);
+        }
+    }
 
-        String outpString = "";
+    /* Waits for the writer thread to catch up, after which the sinks are ours to touch */
+    private boolean syncWrites () {
 
-        for(Double metric : metrics) {
-            outpString = outpString.concat(String.format("%f,", metric));
+        if (rowWriter == null) {
+            return true;
         }
 
-        /* Replace the last comma with a newline  */
-        outpString = outpString.substring(0, outpString.length() -1) + "\n";
-        
         try {
-            fwriter.write(outpString);
+            rowWriter.sync();
+            return true;
         } catch (IOException e) {
             cleanAbort("Failed to write entry to file.");
+            return false;
+        }
+    }
+
+    private void closeContext () {
+
+        if (context != null) {
+            try {
+                context.close();
+            } catch (Exception e) {}
+            context = null;
         }
+    }
+
+    private void finish () {
+
+        teardown();
 
+        int failed = failureReport.getFailures();
+
+        events.publishLifecycle(new LifecycleEvt(LifecycleEvt.Kind.COMPLETE, (failed == 0) ? "Scrape complete!"
+            : String.format("Scrape complete, %d match(es) failed and were skipped.", failed)));
     }
 
     private void cleanAbort (String message) {
 
-        browser.close();
-        
-        try {
-            fwriter.close();
-        } catch (IOException e) {}
+        /* Only the first failure gets reported, the rest are fallout from it */
+        if (aborted) {
+            return;
+        }
 
-        if (message.contains("COMPLETE")) {
-            emitState(message);
-        } else {
-            emitState(message);
-            emitState("KILL");
+        aborted = true;
+
+        metrics.error(message);
+
+        /* Whatever was recorded for an unfinished match isn't worth keeping */
+        if (pageCache != null && currentMatch != null) {
+            closeContext();
+            pageCache.discard(currentMatch.url);
         }
+
+        teardown();
+
+        emitState(message);
+
+        events.publishLifecycle(new LifecycleEvt(LifecycleEvt.Kind.ABORTED, message));
     }
 
-    private void delay (float time) {
+    private void teardown () {
 
-        long timeMilis = (long) (time*1000);
+        closeContext();
 
-        try {
-            Thread.sleep(timeMilis);
-        } catch (Exception e) {
+        if (session != null) {
+            session.close();
+        }
+
+        /* Anything still open here belongs to a match that didn't finish */
+        closeOutputs(false);
+
+        saveIndex();
+
+        if (rowWriter != null) {
+            try {
+                rowWriter.close();
+            } catch (IOException e) {}
+            rowWriter = null;
+        }
+
+        /* A shared journal belongs to whoever handed it to us */
+        if (journal != null && journal != sharedJournal) {
+            try {
+                journal.close();
+            } catch (IOException e) {}
         }
 
+        journal = null;
     }
 }
@@ -0,0 +1,124 @@
+package pscraper;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.microsoft.playwright.BrowserContext;
+
+/**
+ *
+ * @author Asmod
+ * 
+ * @brief Token bucket request limiter, one bucket per host.
+ * 
+ *        Shared by every worker in a run, so the rate holds however many
+ *        matches are going at once. A request that finds its bucket empty
+ *        reserves the next token and sleeps until it's due, which keeps
+ *        waiting requests in arrival order without a queue of our own.
+ */
+public class RateLimiter {
+
+    private final double ratePerSecond;
+    private final double burst;
+
+    private final Map<String, Bucket> buckets = new HashMap<>();
+
+    private long requests  = 0;
+    private long delayed   = 0;
+    private long waitNanos = 0;
+
+    public RateLimiter (double ratePerSecond, int burst) {
+
+        if (ratePerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("Rate and burst must be positive.");
+        }
+
+        this.ratePerSecond = ratePerSecond;
+        this.burst         = burst;
+    }
+
+    /**
+     * Holds every request the context makes until its host has a token. The
+     * context runs its routes newest first, so attaching before the page cache
+     * and ResourcePolicy means cache hits and blocked requests cost nothing.
+     */
+    public void attach (BrowserContext context) {
+
+        context.route("**/*", route -> {
+
+            try {
+                acquire(host(route.request().url()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            route.fallback();
+        });
+    }
+
+    public void acquire (String host) throws InterruptedException {
+
+        long wait = reserve(host);
+
+        if (wait > 0) {
+            Thread.sleep(wait / 1000000, (int) (wait % 1000000));
+        }
+    }
+
+    /* Takes a token, going into debt if need be, and says how long to wait for it in nanos */
+    private synchronized long reserve (String host) {
+
+        long now = System.nanoTime();
+
+        Bucket bucket = buckets.get(host);
+
+        if (bucket == null) {
+            bucket = new Bucket(burst, now);
+            buckets.put(host, bucket);
+        }
+
+        bucket.tokens   = Math.min(burst, bucket.tokens + (now - bucket.refilled) * ratePerSecond / 1e9);
+        bucket.refilled = now;
+        bucket.tokens  -= 1;
+
+        requests++;
+
+        if (bucket.tokens >= 0) {
+            return 0;
+        }
+
+        long wait = (long) (-bucket.tokens / ratePerSecond * 1e9);
+
+        delayed++;
+        waitNanos += wait;
+
+        return wait;
+    }
+
+    public synchronized String report () {
+        return String.format("Rate limiter: %d request(s) to %d host(s), %d delayed for %.1f s in total.",
+                             requests, buckets.size(), delayed, waitNanos / 1e9);
+    }
+
+    private static class Bucket {
+
+        double tokens;
+        long   refilled;
+
+        Bucket (double tokens, long refilled) {
+            this.tokens   = tokens;
+            this.refilled = refilled;
+        }
+    }
+
+    private static String host (String url) {
+
+        try {
+            String host = new URI(url).getHost();
+            return (host == null) ? "" : host;
+        } catch (Exception e) {
+            return "";
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package pscraper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import com.microsoft.playwright.BrowserContext;
+import com.microsoft.playwright.Request;
+import com.microsoft.playwright.Route;
+import com.microsoft.playwright.options.Sizes;
+
+/**
+ *
+ * @author Asmod
+ *
+ * @brief Decides which of a match page's requests are worth loading.
+ *
+ *        Only the results table matters to us, so images, fonts, stylesheets,
+ *        media and the like are aborted before they go out, as is anything
+ *        from a known ad or analytics host. Everything else falls through to
+ *        whatever else is routing the context, which keeps the page cache
+ *        working underneath.
+ *
+ *        An aborted request never tells us how big it would have been, so in
+ *        normal use we count the requests saved and the bytes still loaded.
+ *        Audit mode lets everything through and tallies what would have been
+ *        blocked, which gives the real bytes saved for a page.
+ */
+public class ResourcePolicy {
+
+    public static final String[] DEFAULT_ALLOWED_TYPES = {
+        "document", "script", "xhr", "fetch", "other"
+    };
+
+    public static final String[] DEFAULT_BLOCKED_HOSTS = {
+        "google-analytics\\.com", "googletagmanager\\.com", "googlesyndication\\.com",
+        "doubleclick\\.net", "adservice\\.google\\.", "facebook\\.net", "facebook\\.com/tr",
+        "hotjar\\.com", "quantserve\\.com", "scorecardresearch\\.com", "adsafeprotected\\.com"
+    };
+
+    private final Set<String>   allowedTypes = new HashSet<>(Arrays.asList(DEFAULT_ALLOWED_TYPES));
+    private final List<Pattern> blocked      = new ArrayList<>();
+
+    private boolean audit = false;
+
+    /* Per match */
+    private int  matchAllowed = 0;
+    private int  matchBlocked = 0;
+    private long matchLoaded  = 0;
+    private long matchSaved   = 0;
+
+    /* Whole run */
+    private int  totalAllowed = 0;
+    private int  totalBlocked = 0;
+    private long totalLoaded  = 0;
+    private long totalSaved   = 0;
+
+    public ResourcePolicy () {
+        for (String host : DEFAULT_BLOCKED_HOSTS) {
+            blocked.add(Pattern.compile(host));
+        }
+    }
+
+    public void allowType (String resourceType) {
+        allowedTypes.add(resourceType);
+    }
+
+    public void blockType (String resourceType) {
+        allowedTypes.remove(resourceType);
+    }
+
+    /* Any URL this regex finds a match in gets blocked, whatever its type */
+    public void blockUrl (String regex) {
+        blocked.add(Pattern.compile(regex));
+    }
+
+    public void setAudit (boolean audit) {
+        this.audit = audit;
+    }
+
+    public boolean isBlocked (String resourceType, String url) {
+
+        if (!allowedTypes.contains(resourceType)) {
+            return true;
+        }
+
+        for (Pattern pattern : blocked) {
+            if (pattern.matcher(url).find()) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Routes every request the context's pages make through the policy.
+     * Called once per match, after any other routes are set up on the
+     * context, so the policy is the first to see each request.
+     */
+    public void apply (BrowserContext context) {
+
+        matchAllowed = 0;
+        matchBlocked = 0;
+        matchLoaded  = 0;
+        matchSaved   = 0;
+
+        context.route("**/*", this::handle);
+        context.onRequestFinished(this::finished);
+    }
+
+    private void handle (Route route) {
+
+        Request request = route.request();
+
+        boolean block = isBlocked(request.resourceType(), request.url());
+
+        if (block) {
+            matchBlocked++;
+            totalBlocked++;
+        } else {
+            matchAllowed++;
+            totalAllowed++;
+        }
+
+        if (block && !audit) {
+            route.abort("blockedbyclient");
+        } else {
+            route.fallback();
+        }
+    }
+
+    private void finished (Request request) {
+
+        long bytes;
+
+        try {
+            Sizes sizes = request.sizes();
+            bytes = Math.max(0, sizes.responseBodySize) + Math.max(0, sizes.responseHeadersSize);
+        } catch (RuntimeException e) {
+            /* The page went away first */
+            return;
+        }
+
+        if (audit && isBlocked(request.resourceType(), request.url())) {
+            matchSaved += bytes;
+            totalSaved += bytes;
+        } else {
+            matchLoaded += bytes;
+            totalLoaded += bytes;
+        }
+    }
+
+    /* What the policy did for the context most recently applied to */
+    public String matchReport () {
+        return describe("Match page", matchAllowed, matchBlocked, matchLoaded, matchSaved);
+    }
+
+    public String report () {
+        return describe("Resource policy", totalAllowed, totalBlocked, totalLoaded, totalSaved);
+    }
+
+    private String describe (String label, int allowed, int blockedCount, long loaded, long saved) {
+
+        if (audit) {
+            return String.format("%s (audit): %d request(s) would be blocked, %d KB of %d KB saved.",
+                                 label, blockedCount, saved / 1024, (loaded + saved) / 1024);
+        }
+
+        return String.format("%s: %d request(s) blocked, %d allowed, %d KB loaded.",
+                             label, blockedCount, allowed, loaded / 1024);
+    }
+}
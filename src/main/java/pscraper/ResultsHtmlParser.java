@@ -0,0 +1,234 @@
+package pscraper;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ *
+ * @author Asmod
+ * 
+ * @brief Pure Java table reader for a captured results page.
+ * 
+ *        Walks serialized page HTML (as returned by Page.content()) and pulls
+ *        every table out as a 2D array of cell text, in document order. Cell
+ *        text matches what the browser reports as textContent: markup is
+ *        stripped, entities are decoded and whitespace is left alone. Each
+ *        row holds only its td cells, so header rows come back empty just
+ *        like they do from the live page.
+ */
+public class ResultsHtmlParser {
+
+    private ResultsHtmlParser () {}
+
+    /* Per-table build state. Nested tables get their own entry on the stack. */
+    private static class TableBuilder {
+        List<String[]> rows = new ArrayList<>();
+        List<String>   row  = null;
+        StringBuilder  cell = null;
+    }
+
+    public static List<String[][]> parseTables (String html) {
+
+        List<String[][]>    tables = new ArrayList<>();
+        Deque<TableBuilder> open   = new ArrayDeque<>();
+
+        int pos = 0;
+        int len = html.length();
+
+        while (pos < len) {
+
+            int lt = html.indexOf('<', pos);
+
+            if (lt < 0) {
+                appendText(open, html, pos, len);
+                break;
+            }
+
+            appendText(open, html, pos, lt);
+
+            /* Comments */
+            if (html.startsWith("<!--", lt)) {
+                int end = html.indexOf("-->", lt + 4);
+                pos = (end < 0) ? len : end + 3;
+                continue;
+            }
+
+            int gt = html.indexOf('>', lt);
+            if (gt < 0) {
+                break;
+            }
+
+            boolean closing = lt + 1 < len && html.charAt(lt + 1) == '/';
+            String  name    = tagName(html, closing ? lt + 2 : lt + 1, gt);
+
+            pos = gt + 1;
+
+            /* Script and style bodies are raw text, skip to their end tag */
+            if (!closing && (name.equals("script") || name.equals("style"))) {
+                int end = indexOfIgnoreCase(html, "</" + name, pos);
+                pos = (end < 0) ? len : end;
+                continue;
+            }
+
+            switch (name) {
+
+                case "table":
+                    if (closing) {
+                        if (!open.isEmpty()) {
+                            TableBuilder tb = open.pop();
+                            endRow(tb);
+                            tables.add(tb.rows.toArray(new String[0][]));
+                        }
+                    } else {
+                        open.push(new TableBuilder());
+                    }
+                    break;
+
+                case "tr":
+                    if (!open.isEmpty()) {
+                        TableBuilder tb = open.peek();
+                        endRow(tb);
+                        if (!closing) {
+                            tb.row = new ArrayList<>();
+                        }
+                    }
+                    break;
+
+                case "td":
+                    if (!open.isEmpty()) {
+                        TableBuilder tb = open.peek();
+                        endCell(tb);
+                        if (!closing) {
+                            if (tb.row == null) {
+                                tb.row = new ArrayList<>();
+                            }
+                            tb.cell = new StringBuilder();
+                        }
+                    }
+                    break;
+
+                case "th":
+                    /* Header cells aren't part of the row data, but they do end a td */
+                    if (!open.isEmpty()) {
+                        endCell(open.peek());
+                    }
+                    break;
+
+                default:
+                    break;
+            }
+        }
+
+        return tables;
+    }
+
+    private static int indexOfIgnoreCase (String html, String needle, int from) {
+
+        for (int idx = from; idx <= html.length() - needle.length(); idx++) {
+            if (html.regionMatches(true, idx, needle, 0, needle.length())) {
+                return idx;
+            }
+        }
+
+        return -1;
+    }
+
+    private static String tagName (String html, int start, int end) {
+
+        int idx = start;
+
+        while (idx < end) {
+            char c = html.charAt(idx);
+            if (Character.isWhitespace(c) || c == '/' || c == '>') {
+                break;
+            }
+            idx++;
+        }
+
+        return html.substring(start, idx).toLowerCase();
+    }
+
+    private static void appendText (Deque<TableBuilder> open, String html, int start, int end) {
+
+        if (start >= end || open.isEmpty()) {
+            return;
+        }
+
+        /* textContent of a cell includes the text of any nested tables */
+        for (TableBuilder tb : open) {
+            if (tb.cell != null) {
+                decodeInto(tb.cell, html, start, end);
+            }
+        }
+    }
+
+    private static void endCell (TableBuilder tb) {
+
+        if (tb.cell != null && tb.row != null) {
+            tb.row.add(tb.cell.toString());
+        }
+
+        tb.cell = null;
+    }
+
+    private static void endRow (TableBuilder tb) {
+
+        endCell(tb);
+
+        if (tb.row != null) {
+            tb.rows.add(tb.row.toArray(new String[0]));
+        }
+
+        tb.row = null;
+    }
+
+    /* Decodes the handful of entities Page.content() emits, plus numeric references */
+    private static void decodeInto (StringBuilder out, String html, int start, int end) {
+
+        for (int idx = start; idx < end; idx++) {
+
+            char c = html.charAt(idx);
+
+            if (c != '&') {
+                out.append(c);
+                continue;
+            }
+
+            int semi = html.indexOf(';', idx);
+
+            if (semi < 0 || semi >= end || semi - idx > 10) {
+                out.append(c);
+                continue;
+            }
+
+            String entity = html.substring(idx + 1, semi);
+
+            switch (entity) {
+                case "amp":  out.append('&');      break;
+                case "lt":   out.append('<');      break;
+                case "gt":   out.append('>');      break;
+                case "quot": out.append('"');      break;
+                case "apos": out.append('\'');     break;
+                case "nbsp": out.append('\u00a0'); break;
+                default:
+                    if (entity.startsWith("#")) {
+                        try {
+                            int code = (entity.startsWith("#x") || entity.startsWith("#X"))
+                                        ? Integer.parseInt(entity.substring(2), 16)
+                                        : Integer.parseInt(entity.substring(1));
+                            out.appendCodePoint(code);
+                        } catch (IllegalArgumentException e) {
+                            out.append(html, idx, semi + 1);
+                        }
+                    } else {
+                        out.append(html, idx, semi + 1);
+                    }
+                    break;
+            }
+
+            idx = semi;
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package pscraper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.microsoft.playwright.Page;
+import com.microsoft.playwright.Response;
+
+/**
+ *
+ * @author Asmod
+ *
+ * @brief Reads match results from the data the results page downloads.
+ *
+ *        The results table is drawn client side from a JSON payload holding
+ *        every stage and division. Listening for that payload lets us skip
+ *        selecting stages and reading td text altogether. The payload we
+ *        understand is an array of stage objects, the match level one first
+ *        if present. Each stage maps division names to lists of shooter
+ *        records, and each record carries the stage metrics under the names
+ *        in FIELDS (or one of their aliases).
+ *
+ *        Records are laid out into the same cells as a #mainResultsTable row,
+ *        so processStage validates them exactly as it does the DOM. Anything
+ *        we don't recognise gives null, and the caller falls back to the DOM.
+ */
+public class ResultsPayload {
+
+    /* Payload field names for each metric cell, the first one is preferred */
+    private static final Object[][] FIELDS = {
+        { PractiScoreScraper.PSBL_IDX,   "stagePercent", "percent" },
+        { PractiScoreScraper.MAXPTS_IDX, "stagePoints" },
+        { PractiScoreScraper.PTS_IDX,    "points" },
+        { PractiScoreScraper.HF_IDX,     "hitFactor", "hf" },
+        { PractiScoreScraper.TIME_IDX,   "stageTimeSecs", "time" },
+        { PractiScoreScraper.A_IDX,      "A", "alphas" },
+        { PractiScoreScraper.B_IDX,      "B", "bravos" },
+        { PractiScoreScraper.C_IDX,      "C", "charlies" },
+        { PractiScoreScraper.D_IDX,      "D", "deltas" },
+        { PractiScoreScraper.M_IDX,      "M", "misses" },
+        { PractiScoreScraper.NPM_IDX,    "NPM", "noPenaltyMisses" },
+        { PractiScoreScraper.NS_IDX,     "NS", "noShoots" },
+        { PractiScoreScraper.PROC_IDX,   "Proc", "procedurals" }
+    };
+
+    /* Who the shooter is. Nice to have, but a record isn't rejected without them. */
+    private static final Object[][] IDENTITY = {
+        { PractiScoreScraper.NAME_IDX,   "name", "shooterName" },
+        { PractiScoreScraper.MEMBER_IDX, "memberNumber", "uspsa" }
+    };
+
+    private static final int CELLS = PractiScoreScraper.PROC_IDX + 1;
+
+    private final List<Response> responses = new ArrayList<>();
+
+    /**
+     * Starts collecting the page's data responses. Bodies are only read once
+     * stageTables is called, so nothing extra happens while the page loads.
+     */
+    public void attach (Page page) {
+
+        responses.clear();
+
+        page.onResponse(response -> {
+            String type = response.request().resourceType();
+            if (type.equals("xhr") || type.equals("fetch")) {
+                responses.add(response);
+            }
+        });
+    }
+
+    /**
+     * Decodes one table per stage (stage 1 first) from whatever the page has
+     * downloaded so far, or returns null if no response holds a payload we
+     * recognise with the right number of stages.
+     */
+    public List<String[][]> stageTables (int numStages) {
+
+        for (Response response : responses) {
+
+            String contentType = response.headers().get("content-type");
+
+            if (contentType == null || !contentType.contains("json")) {
+                continue;
+            }
+
+            String body;
+
+            try {
+                body = response.text();
+            } catch (RuntimeException e) {
+                continue;
+            }
+
+            List<String[][]> tables = decode(body, numStages);
+
+            if (tables != null) {
+                return tables;
+            }
+        }
+
+        return null;
+    }
+
+    /* Package access so a payload can be decoded without a browser */
+    static List<String[][]> decode (String json, int numStages) {
+
+        JsonElement root;
+
+        try {
+            root = JsonParser.parseString(json);
+        } catch (JsonParseException e) {
+            return null;
+        }
+
+        if (!root.isJsonArray()) {
+            return null;
+        }
+
+        List<String[][]> tables = new ArrayList<>();
+
+        JsonArray stages = root.getAsJsonArray();
+
+        boolean matchDropped = false;
+
+        for (int idx = 0; idx < stages.size(); idx++) {
+
+            JsonElement stage = stages.get(idx);
+
+            String[][] table = stage.isJsonObject() ? decodeStage(stage.getAsJsonObject()) : null;
+
+            if (table == null) {
+                /* The match level entry is allowed to look different, it gets dropped anyway */
+                if (idx == 0) {
+                    matchDropped = true;
+                    continue;
+                }
+                return null;
+            }
+
+            tables.add(table);
+        }
+
+        /* Same rule as a snapshot, the match level results come first when present */
+        if (!matchDropped && tables.size() == numStages) {
+            tables.remove(0);
+        }
+
+        if (numStages < 2 || tables.size() != numStages - 1) {
+            return null;
+        }
+
+        return tables;
+    }
+
+    /**
+     * One stage's records as table rows, top scorer first. Row 0 is left
+     * empty like the DOM header row. Records under "Overall" are only used
+     * when the stage has no per-division lists, and then need a division
+     * field of their own.
+     */
+    private static String[][] decodeStage (JsonObject stage) {
+
+        List<String[]> rows       = new ArrayList<>();
+        boolean        recognised = false;
+
+        for (Map.Entry<String, JsonElement> entry : stage.entrySet()) {
+
+            if (PractiScoreScraper.divisionCode(entry.getKey()) == null || !entry.getValue().isJsonArray()) {
+                continue;
+            }
+
+            recognised |= addRecords(rows, entry.getValue().getAsJsonArray(), entry.getKey());
+        }
+
+        if (rows.isEmpty() && stage.has("Overall") && stage.get("Overall").isJsonArray()) {
+            recognised = addRecords(rows, stage.getAsJsonArray("Overall"), null);
+        }
+
+        if (!recognised) {
+            return null;
+        }
+
+        Collections.sort(rows, (a, b) -> Double.compare(number(b[PractiScoreScraper.MAXPTS_IDX]),
+                                                        number(a[PractiScoreScraper.MAXPTS_IDX])));
+
+        String[][] table = new String[rows.size() + 1][];
+
+        table[0] = new String[0];
+
+        for (int idx = 0; idx < rows.size(); idx++) {
+            table[idx + 1] = rows.get(idx);
+        }
+
+        return table;
+    }
+
+    /* True if at least one record carried every metric */
+    private static boolean addRecords (List<String[]> rows, JsonArray records, String division) {
+
+        boolean complete = false;
+
+        for (JsonElement element : records) {
+
+            if (!element.isJsonObject()) {
+                return false;
+            }
+
+            JsonObject record = element.getAsJsonObject();
+            String[]   cells  = new String[CELLS];
+            boolean    all    = true;
+
+            cells[PractiScoreScraper.DIV_IDX] = (division != null) ? division : text(record, "division");
+
+            for (Object[] field : FIELDS) {
+
+                String value = null;
+
+                for (int name = 1; name < field.length && value == null; name++) {
+                    value = text(record, (String) field[name]);
+                }
+
+                /* A missing cell fails validation for this shooter, same as a blank td */
+                cells[(Integer) field[0]] = value;
+                all &= (value != null);
+            }
+
+            complete |= all;
+
+            for (Object[] field : IDENTITY) {
+                for (int name = 1; name < field.length && cells[(Integer) field[0]] == null; name++) {
+                    cells[(Integer) field[0]] = text(record, (String) field[name]);
+                }
+            }
+
+            rows.add(cells);
+        }
+
+        return complete;
+    }
+
+    private static String text (JsonObject record, String name) {
+
+        JsonElement value = record.get(name);
+
+        if (value == null || !value.isJsonPrimitive()) {
+            return null;
+        }
+
+        /* Numbers keep their original text, so they parse exactly as they would from the page */
+        return value.getAsString();
+    }
+
+    private static double number (String text) {
+
+        try {
+            return (text == null) ? Double.NEGATIVE_INFINITY : Double.parseDouble(text);
+        } catch (NumberFormatException e) {
+            return Double.NEGATIVE_INFINITY;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package pscraper;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ *
+ * @author Asmod
+ *
+ * @brief How hard to try before giving up on a stage or a match.
+ *
+ *        A stage that fails to load is retried on the same page after a
+ *        reload. Once its attempts run out the match fails, and the match is
+ *        retried on a fresh context, carrying on from the stages it already
+ *        has. A match that runs out of attempts is reported and skipped.
+ *
+ *        The wait before attempt n + 1 doubles each time from baseMillis, up
+ *        to maxMillis, and a random half of it is jitter so workers that
+ *        failed together don't all come back together.
+ */
+public class RetryPolicy {
+
+    private int  stageAttempts = 3;
+    private int  matchAttempts = 2;
+    private long baseMillis    = 1000;
+    private long maxMillis     = 30000;
+    private long tableTimeout  = 120000;
+
+    public int getStageAttempts () {
+        return stageAttempts;
+    }
+
+    /* Tries per stage on one page, 1 means no retries */
+    public void setStageAttempts (int stageAttempts) {
+        this.stageAttempts = Math.max(1, stageAttempts);
+    }
+
+    public int getMatchAttempts () {
+        return matchAttempts;
+    }
+
+    /* Tries per match, each on a fresh context */
+    public void setMatchAttempts (int matchAttempts) {
+        this.matchAttempts = Math.max(1, matchAttempts);
+    }
+
+    public void setBackoff (long baseMillis, long maxMillis) {
+        this.baseMillis = Math.max(0, baseMillis);
+        this.maxMillis  = Math.max(this.baseMillis, maxMillis);
+    }
+
+    public long getTableTimeout () {
+        return tableTimeout;
+    }
+
+    /* How long one attempt waits for the results table to show up */
+    public void setTableTimeout (long tableTimeout) {
+        this.tableTimeout = Math.max(1, tableTimeout);
+    }
+
+    /* Wait after the given failed attempt, counting from 1 */
+    public long backoffMillis (int attempt) {
+
+        int  shift = Math.min(30, Math.max(0, attempt - 1));
+        long cap   = Math.min(maxMillis, baseMillis << shift);
+        long half  = cap / 2;
+
+        return half + ((half > 0) ? ThreadLocalRandom.current().nextLong(half + 1) : 0);
+    }
+}
@@ -0,0 +1,40 @@
+package pscraper;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ *
+ * @author Asmod
+ * 
+ * @brief Somewhere validated metric rows can be written to.
+ */
+public interface RowSink extends Closeable {
+
+    /* Column names, in the order every row is laid out */
+    public static final String[] COLUMNS = CsvRowWriter.HEADER.split(",");
+
+    abstract void writeRow(double[] row, int len) throws IOException;
+
+    /* For sinks that use the shooter's division code, the rest ignore it */
+    default void writeRow(double[] row, int len, String division) throws IOException {
+        writeRow(row, len);
+    }
+
+    abstract void flush() throws IOException;
+
+    /**
+     * Forces everything written so far to disk and returns the file length
+     * to truncate back to if the next rows have to be thrown away. Sinks
+     * that only land on disk when closed return -1.
+     */
+    abstract long commit() throws IOException;
+
+    /**
+     * Closes an output its match didn't finish. Sinks that can pick up where
+     * they left off keep what they need for that, the rest just close.
+     */
+    default void suspend() throws IOException {
+        close();
+    }
+}
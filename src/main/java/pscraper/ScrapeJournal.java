@@ -0,0 +1,294 @@
+package pscraper;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ *
+ * @author Asmod
+ * 
+ * @brief Durable record of which (match, division, stage) units are done.
+ * 
+ *        Append-only, one tab separated line per event, synced as it's
+ *        written:
+ * 
+ *          OPEN   url div path offset         output opened, length before any rows
+ *          STAGE  url div stage path=offset.. stage finished, output lengths after it
+ *          MATCH  url div                     every stage finished, output closed
+ *          RESET  url div                     forget the match, it's being redone
+ * 
+ *        Only newline terminated lines count. A torn last line from a crash
+ *        is ignored when the journal is loaded, and cut off before anything
+ *        else is appended. An offset of -1 means that output only lands on
+ *        disk when it's closed, so its match can't be resumed part way
+ *        through, and the output is removed when the match is redone.
+ * 
+ *        Safe to share between the workers of a MatchScheduler.
+ */
+public class ScrapeJournal implements Closeable {
+
+    /* Everything known about one match/division, as of the last RESET */
+    private static class MatchState {
+        boolean                 done       = false;
+        Set<Integer>            stages     = new HashSet<>();
+        Map<String, Long>       openedAt   = new LinkedHashMap<>();
+        Map<String, Long>       committed  = new LinkedHashMap<>();
+    }
+
+    private final Map<String, MatchState> states = new HashMap<>();
+
+    private final FileOutputStream fos;
+    private final Writer           out;
+
+    public ScrapeJournal (File file) throws IOException {
+
+        if (file.exists()) {
+            /* Anything after the last complete line is a torn write, don't append onto it */
+            truncate(file.getPath(), load(file));
+        }
+
+        fos = new FileOutputStream(file, true);
+        out = new OutputStreamWriter(fos, StandardCharsets.UTF_8);
+    }
+
+    public synchronized boolean isMatchDone (String url, String div) {
+        MatchState state = states.get(key(url, div));
+        return state != null && state.done;
+    }
+
+    /* Stages can only be skipped if every output of the match can be rolled back */
+    public synchronized boolean isStageDone (String url, String div, int stage) {
+
+        MatchState state = states.get(key(url, div));
+
+        return state != null && isResumable(state) && state.stages.contains(stage);
+    }
+
+    public synchronized boolean hasProgress (String url, String div) {
+        return states.containsKey(key(url, div));
+    }
+
+    /**
+     * Rolls every output of a partly scraped match back to the end of its
+     * last finished stage. Outputs that can't be rolled back mean the whole
+     * match is redone, so it is reset and its outputs discarded instead.
+     */
+    public synchronized void rollBack (String url, String div) throws IOException {
+
+        MatchState state = states.get(key(url, div));
+
+        if (state == null) {
+            return;
+        }
+
+        if (!isResumable(state)) {
+            reset(url, div, true);
+            return;
+        }
+
+        for (Map.Entry<String, Long> entry : state.openedAt.entrySet()) {
+
+            Long offset = state.committed.get(entry.getKey());
+
+            truncate(entry.getKey(), (offset != null) ? offset : entry.getValue());
+        }
+    }
+
+    /**
+     * Forgets a match so it is scraped again from the start. With truncate
+     * set its outputs are cut back to where they were before it was opened,
+     * and the ones only written on close, which hold nothing but this match,
+     * are deleted.
+     */
+    public synchronized void reset (String url, String div, boolean truncate) throws IOException {
+
+        MatchState state = states.remove(key(url, div));
+
+        if (truncate && state != null) {
+            for (Map.Entry<String, Long> entry : state.openedAt.entrySet()) {
+                if (entry.getValue() < 0) {
+                    discard(entry.getKey());
+                } else {
+                    truncate(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+
+        append(String.format("RESET\t%s\t%s", url, div));
+    }
+
+    public synchronized void fileOpened (String url, String div, String path, long offset) throws IOException {
+
+        MatchState state = stateFor(url, div);
+
+        /* Only the first open counts, later ones are resumes of the same output */
+        if (!state.openedAt.containsKey(path)) {
+            state.openedAt.put(path, offset);
+            append(String.format("OPEN\t%s\t%s\t%s\t%d", url, div, path, offset));
+        }
+    }
+
+    public synchronized void stageDone (String url, String div, int stage, Map<String, Long> offsets) throws IOException {
+
+        MatchState state = stateFor(url, div);
+
+        StringBuilder line = new StringBuilder(String.format("STAGE\t%s\t%s\t%d", url, div, stage));
+
+        for (Map.Entry<String, Long> entry : offsets.entrySet()) {
+            line.append('\t').append(entry.getKey()).append('=').append(entry.getValue());
+        }
+
+        state.stages.add(stage);
+        state.committed.putAll(offsets);
+
+        append(line.toString());
+    }
+
+    public synchronized void matchDone (String url, String div) throws IOException {
+
+        stateFor(url, div).done = true;
+
+        append(String.format("MATCH\t%s\t%s", url, div));
+    }
+
+    @Override
+    public synchronized void close () throws IOException {
+        out.close();
+    }
+
+    /* Replays every complete line, returns the length up to the end of the last one */
+    private long load (File file) throws IOException {
+
+        byte[] data = Files.readAllBytes(file.toPath());
+
+        int start = 0;
+
+        for (int idx = 0; idx < data.length; idx++) {
+
+            if (data[idx] != '\n') {
+                continue;
+            }
+
+            String line = new String(data, start, idx - start, StandardCharsets.UTF_8);
+
+            start = idx + 1;
+
+            try {
+                replay(line.split("\t"));
+            } catch (RuntimeException e) {
+                /* Garbled line, skip it and carry on with the rest */
+            }
+        }
+
+        return start;
+    }
+
+    private void replay (String[] fields) {
+
+        String url = fields[1];
+        String div = fields[2];
+
+        switch (fields[0]) {
+
+            case "OPEN":
+                MatchState opened = stateFor(url, div);
+                if (!opened.openedAt.containsKey(fields[3])) {
+                    opened.openedAt.put(fields[3], Long.parseLong(fields[4]));
+                }
+                break;
+
+            case "STAGE":
+                Map<String, Long> offsets = new LinkedHashMap<>();
+                for (int idx = 4; idx < fields.length; idx++) {
+                    int eq = fields[idx].lastIndexOf('=');
+                    offsets.put(fields[idx].substring(0, eq), Long.parseLong(fields[idx].substring(eq + 1)));
+                }
+                MatchState staged = stateFor(url, div);
+                staged.stages.add(Integer.parseInt(fields[3]));
+                staged.committed.putAll(offsets);
+                break;
+
+            case "MATCH":
+                stateFor(url, div).done = true;
+                break;
+
+            case "RESET":
+                states.remove(key(url, div));
+                break;
+
+            default:
+                break;
+        }
+    }
+
+    private MatchState stateFor (String url, String div) {
+
+        String     key   = key(url, div);
+        MatchState state = states.get(key);
+
+        if (state == null) {
+            state = new MatchState();
+            states.put(key, state);
+        }
+
+        return state;
+    }
+
+    private boolean isResumable (MatchState state) {
+
+        for (long offset : state.openedAt.values()) {
+            if (offset < 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private void append (String line) throws IOException {
+
+        out.write(line);
+        out.write('\n');
+        out.flush();
+
+        fos.getFD().sync();
+    }
+
+    private static void truncate (String path, long offset) throws IOException {
+
+        File file = new File(path);
+
+        if (offset < 0 || !file.exists() || file.length() <= offset) {
+            return;
+        }
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(offset);
+        }
+    }
+
+    private static void discard (String path) throws IOException {
+
+        File file = new File(path);
+
+        if (file.exists() && !file.delete()) {
+            throw new IOException(String.format("Unable to remove %s.", file.getName()));
+        }
+    }
+
+    private static String key (String url, String div) {
+        return url + '\t' + div;
+    }
+}
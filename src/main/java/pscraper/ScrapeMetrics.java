@@ -0,0 +1,363 @@
+package pscraper;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ *
+ * @author Asmod
+ * 
+ * @brief Per-phase timings, throughput and error counts for a scrape.
+ * 
+ *        Each phase keeps a count, a running total, a max and a histogram
+ *        with one bucket per power of two microseconds, which is plenty to
+ *        read percentiles off. Recording is a few atomic adds, so it's fine
+ *        on the per-row path. Registered with the platform MBean server for
+ *        the length of a run, and summed up as a table at the end.
+ */
+public class ScrapeMetrics implements ScrapeMetricsMBean {
+
+    public enum Phase {
+        BROWSER_LAUNCH,
+        NEW_CONTEXT,
+        NAVIGATE,
+        DIVISION_SELECT,
+        STAGE_SELECT,
+        READINESS_WAIT,
+        TABLE_WAIT,
+        EXTRACT,
+        PROCESS,
+        WRITE,
+        WRITE_WAIT,
+        DRAIN,
+        COMMIT
+    }
+
+    private static final int BUCKETS = 40;
+
+    private static final AtomicInteger instances = new AtomicInteger();
+
+    /* One per phase */
+    private static class Timer {
+
+        final LongAdder       count    = new LongAdder();
+        final LongAdder       totalNs  = new LongAdder();
+        final AtomicLong      maxNs    = new AtomicLong();
+        final AtomicLongArray buckets  = new AtomicLongArray(BUCKETS);
+
+        void record (long nanos) {
+
+            count.increment();
+            totalNs.add(nanos);
+
+            long max;
+            while (nanos > (max = maxNs.get()) && !maxNs.compareAndSet(max, nanos)) {}
+
+            long micros = nanos / 1000;
+            int  bucket = (micros <= 0) ? 0 : Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+
+            buckets.incrementAndGet(bucket);
+        }
+
+        /* Upper edge of the bucket the quantile lands in */
+        double quantileMillis (double q) {
+
+            long total = count.sum();
+
+            if (total == 0) {
+                return 0;
+            }
+
+            long target = (long) Math.ceil(q * total);
+            long seen   = 0;
+
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                seen += buckets.get(bucket);
+                if (seen >= target) {
+                    return Math.min((1L << bucket) / 1000.0, maxNs.get() / 1e6);
+                }
+            }
+
+            return maxNs.get() / 1e6;
+        }
+
+        void reset () {
+            count.reset();
+            totalNs.reset();
+            maxNs.set(0);
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                buckets.set(bucket, 0);
+            }
+        }
+    }
+
+    private final Timer[] timers = new Timer[Phase.values().length];
+
+    private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+
+    private final LongAdder rows    = new LongAdder();
+    private final LongAdder stages  = new LongAdder();
+    private final LongAdder matches = new LongAdder();
+
+    /* Rows waiting on the writer thread, see AsyncRowWriter */
+    private volatile int        queueDepth    = 0;
+    private final AtomicInteger maxQueueDepth = new AtomicInteger();
+
+    private volatile long startNs = System.nanoTime();
+    private volatile long endNs   = 0;
+
+    private ObjectName name;
+
+    public ScrapeMetrics () {
+        for (Phase phase : Phase.values()) {
+            timers[phase.ordinal()] = new Timer();
+        }
+    }
+
+    /* Pair with stop() around the thing being timed */
+    public long start () {
+        return System.nanoTime();
+    }
+
+    public void stop (Phase phase, long startedAt) {
+        timers[phase.ordinal()].record(System.nanoTime() - startedAt);
+    }
+
+    public void record (Phase phase, long nanos) {
+        timers[phase.ordinal()].record(nanos);
+    }
+
+    public void error (String cause) {
+        errors.computeIfAbsent(cause, k -> new LongAdder()).increment();
+    }
+
+    public void writeQueueDepth (int depth) {
+
+        queueDepth = depth;
+
+        maxQueueDepth.accumulateAndGet(depth, Math::max);
+    }
+
+    public void rowWritten () {
+        rows.increment();
+    }
+
+    public void stageCompleted () {
+        stages.increment();
+    }
+
+    public void matchCompleted () {
+        matches.increment();
+    }
+
+    /**
+     * Starts the run clock and publishes the metrics over JMX. Failing to
+     * register only costs the JMX view, the numbers are still kept.
+     */
+    public void begin () {
+
+        startNs = System.nanoTime();
+        endNs   = 0;
+
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+            name = new ObjectName(String.format("pscraper:type=ScrapeMetrics,name=scraper-%d", instances.incrementAndGet()));
+
+            server.registerMBean(this, name);
+
+        } catch (Exception e) {
+            name = null;
+        }
+    }
+
+    /* Stops the run clock and withdraws the MBean */
+    public void end () {
+
+        endNs = System.nanoTime();
+
+        if (name != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+            } catch (Exception e) {}
+            name = null;
+        }
+    }
+
+    @Override
+    public long getRowsWritten () {
+        return rows.sum();
+    }
+
+    @Override
+    public long getStagesCompleted () {
+        return stages.sum();
+    }
+
+    @Override
+    public long getMatchesCompleted () {
+        return matches.sum();
+    }
+
+    @Override
+    public int getWriteQueueDepth () {
+        return queueDepth;
+    }
+
+    @Override
+    public int getMaxWriteQueueDepth () {
+        return maxQueueDepth.get();
+    }
+
+    @Override
+    public double getRowsPerSecond () {
+        return rows.sum() / elapsedSeconds();
+    }
+
+    @Override
+    public double getStagesPerSecond () {
+        return stages.sum() / elapsedSeconds();
+    }
+
+    @Override
+    public String[] getPhaseNames () {
+
+        String[] names = new String[timers.length];
+
+        for (Phase phase : Phase.values()) {
+            names[phase.ordinal()] = phase.name();
+        }
+
+        return names;
+    }
+
+    @Override
+    public long[] getPhaseCounts () {
+
+        long[] counts = new long[timers.length];
+
+        for (int idx = 0; idx < timers.length; idx++) {
+            counts[idx] = timers[idx].count.sum();
+        }
+
+        return counts;
+    }
+
+    @Override
+    public double[] getPhaseMeanMillis () {
+
+        double[] means = new double[timers.length];
+
+        for (int idx = 0; idx < timers.length; idx++) {
+            long count = timers[idx].count.sum();
+            means[idx] = (count == 0) ? 0 : timers[idx].totalNs.sum() / 1e6 / count;
+        }
+
+        return means;
+    }
+
+    @Override
+    public double[] getPhaseP95Millis () {
+
+        double[] p95 = new double[timers.length];
+
+        for (int idx = 0; idx < timers.length; idx++) {
+            p95[idx] = timers[idx].quantileMillis(0.95);
+        }
+
+        return p95;
+    }
+
+    @Override
+    public double[] getPhaseMaxMillis () {
+
+        double[] max = new double[timers.length];
+
+        for (int idx = 0; idx < timers.length; idx++) {
+            max[idx] = timers[idx].maxNs.get() / 1e6;
+        }
+
+        return max;
+    }
+
+    @Override
+    public String[] getErrors () {
+
+        List<String> out = new ArrayList<>();
+
+        for (Map.Entry<String, LongAdder> entry : errors.entrySet()) {
+            out.add(String.format("%s=%d", entry.getKey(), entry.getValue().sum()));
+        }
+
+        return out.toArray(new String[0]);
+    }
+
+    @Override
+    public String getSummary () {
+
+        StringBuilder table = new StringBuilder();
+
+        table.append(String.format("%-16s %8s %12s %10s %10s %10s%n", "Phase", "Count", "Total ms", "Mean ms", "p95 ms", "Max ms"));
+
+        double[] means = getPhaseMeanMillis();
+        double[] p95   = getPhaseP95Millis();
+        double[] max   = getPhaseMaxMillis();
+
+        for (Phase phase : Phase.values()) {
+
+            int   idx   = phase.ordinal();
+            long  count = timers[idx].count.sum();
+
+            if (count == 0) {
+                continue;
+            }
+
+            table.append(String.format("%-16s %8d %12.1f %10.2f %10.2f %10.2f%n",
+                                       phase.name(), count, timers[idx].totalNs.sum() / 1e6,
+                                       means[idx], p95[idx], max[idx]));
+        }
+
+        table.append(String.format("%d match(es), %d stage(s), %d row(s) in %.1f s: %.2f stages/s, %.1f rows/s%n",
+                                   matches.sum(), stages.sum(), rows.sum(), elapsedSeconds(),
+                                   getStagesPerSecond(), getRowsPerSecond()));
+
+        for (String err : getErrors()) {
+            table.append(String.format("error %s%n", err));
+        }
+
+        return table.toString();
+    }
+
+    @Override
+    public void reset () {
+
+        for (Timer timer : timers) {
+            timer.reset();
+        }
+
+        errors.clear();
+        rows.reset();
+        maxQueueDepth.set(queueDepth);
+        stages.reset();
+        matches.reset();
+
+        startNs = System.nanoTime();
+    }
+
+    private double elapsedSeconds () {
+
+        long end = (endNs == 0) ? System.nanoTime() : endNs;
+
+        return Math.max(1e-9, (end - startNs) / 1e9);
+    }
+}
@@ -0,0 +1,42 @@
+package pscraper;
+
+/**
+ *
+ * @author Asmod
+ * 
+ * @brief JMX view of a running scrape. See ScrapeMetrics.
+ */
+public interface ScrapeMetricsMBean {
+
+    abstract long getRowsWritten();
+
+    abstract long getStagesCompleted();
+
+    abstract long getMatchesCompleted();
+
+    /* Rows handed to the writer thread but not yet written */
+    abstract int getWriteQueueDepth();
+
+    abstract int getMaxWriteQueueDepth();
+
+    abstract double getRowsPerSecond();
+
+    abstract double getStagesPerSecond();
+
+    abstract String[] getPhaseNames();
+
+    abstract long[] getPhaseCounts();
+
+    abstract double[] getPhaseMeanMillis();
+
+    abstract double[] getPhaseP95Millis();
+
+    abstract double[] getPhaseMaxMillis();
+
+    /* "cause=count" for every error seen so far */
+    abstract String[] getErrors();
+
+    abstract String getSummary();
+
+    abstract void reset();
+}
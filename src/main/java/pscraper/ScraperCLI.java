@@ -0,0 +1,491 @@
+package pscraper;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import Events.LifecycleEvt;
+import Events.ProgressEvt;
+import Events.StateEvt;
+import Handlers.LifecycleHandler;
+import Handlers.ProgressHandler;
+import Handlers.StateHandler;
+
+/**
+ *
+ * @author Asmod
+ * 
+ * @brief Command line entry point for batch scraping, no GUI required.
+ * 
+ *        Runs each division through a MatchScheduler and reports progress as
+ *        JSON lines on stdout. Nothing here loads AWT or Swing, so it runs on
+ *        headless boxes.
+ * 
+ *        Exit codes: 0 done, 1 a scrape aborted, 2 bad arguments,
+ *        3 unreadable manifest.
+ */
+public class ScraperCLI {
+
+    public static final int EXIT_OK       = 0;
+    public static final int EXIT_ABORTED  = 1;
+    public static final int EXIT_USAGE    = 2;
+    public static final int EXIT_MANIFEST = 3;
+
+    private static final String USAGE =
+        "Usage: java -cp PractiScraper-1.jar pscraper.ScraperCLI [options] <manifest>\n" +
+        "  --divisions <list>       comma separated, e.g. CO,L or ALL (default CO)\n" +
+        "  --format <csv|gzip|columnar> output format, gzip is compressed csv (default csv)\n" +
+        "  --concurrency <n>        matches scraped at once (default 1)\n" +
+        "  --rate <n>               requests per second to any one host, 0 for no limit (default 10)\n" +
+        "  --burst <n>              requests allowed at once before the rate applies (default 20)\n" +
+        "  --stage-pages <n>        pages per match selecting stages at once (default 1)\n" +
+        "  --snapshot               parse stages from one capture of the page\n" +
+        "  --payload                decode stages from the page's results data\n" +
+        "  --write-queue <n>        rows buffered for the writer thread, 0 writes inline (default 4096)\n" +
+        "  --features               also write a standardized, one-hot feature matrix per match\n" +
+        "  --headful                show the browser\n" +
+        "  --force-refresh          scrape matches the journal says are done\n" +
+        "  --journal <file>         journal location (default ./pscraper.journal)\n" +
+        "  --no-journal             don't record or resume progress\n" +
+        "  --cache <dir>            record/replay match pages in this directory\n" +
+        "  --index <file>           add every shooter's results to this shooter index\n" +
+        "  --index-every <n>        matches finished between saves of the index (default 10)\n" +
+        "  --offline                with --cache, never go to the network\n" +
+        "  --readiness-timeout <ms> usual wait for a table to re-render, slower ones get the table timeout\n" +
+        "  --table-timeout <ms>     how long one attempt waits for a results table (default 120000)\n" +
+        "  --stage-attempts <n>     tries per stage, reloading the page in between (default 3)\n" +
+        "  --match-attempts <n>     tries per match, each on a fresh context (default 2)\n" +
+        "  --failures <file>        where matches given up on are listed (default ./pscraper.failures)\n" +
+        "  --block-resources        don't load images, fonts, ads and the like\n" +
+        "  --audit-blocking         load everything, but report what blocking would save\n";
+
+    private static final List<String> DIVISIONS = Arrays.asList("CO", "L", "LO", "O", "PCC", "P", "SS", "ALL");
+
+    private static final PrintStream out = System.out;
+
+    /* Parsed arguments */
+    private String       manifestPath;
+    private List<String> divisions        = new ArrayList<>();
+    private OutputFormat format           = OutputFormat.CSV;
+    private int          concurrency      = 1;
+    private int          stagePages       = 1;
+    private double       rate             = 10;
+    private int          burst            = 20;
+    private boolean      snapshot         = false;
+    private boolean      payload          = false;
+    private boolean      features         = false;
+    private int          writeQueue       = 4096;
+    private boolean      headless         = true;
+    private boolean      forceRefresh     = false;
+    private File         journalFile      = new File("./pscraper.journal");
+    private File         cacheDir         = null;
+    private File         indexFile        = null;
+    private int          indexEvery       = 10;
+    private boolean      offline          = false;
+    private long         readinessTimeout = -1;
+    private boolean      blockResources   = false;
+    private boolean      auditBlocking    = false;
+    private File         failuresFile     = new File("./pscraper.failures");
+
+    private final RetryPolicy retryPolicy = new RetryPolicy();
+
+    /* One for the whole run, a struggling site doesn't recover between divisions */
+    private final CircuitBreaker breaker = new CircuitBreaker();
+
+    private final AtomicBoolean aborted = new AtomicBoolean(false);
+
+    private int failed = 0;
+
+    public static void main (String[] args) {
+        System.exit(new ScraperCLI().run(args));
+    }
+
+    public int run (String[] args) {
+
+        try {
+            parseArgs(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.print(USAGE);
+            return EXIT_USAGE;
+        }
+
+        File manifestFile = new File(manifestPath);
+
+        if (!manifestFile.canRead()) {
+            emit(-1, "error", "message", String.format("Unable to read %s.", manifestPath));
+            return EXIT_MANIFEST;
+        }
+
+        ShooterIndex index = null;
+
+        if (indexFile != null) {
+            try {
+                index = indexFile.exists() ? ShooterIndex.load(indexFile) : new ShooterIndex();
+            } catch (IOException e) {
+                emit(-1, "error", "message", e.getMessage());
+                return EXIT_USAGE;
+            }
+        }
+
+        long start   = System.nanoTime();
+        int  matches = 0;
+
+        /* Each division is its own pass over the manifest, streamed as workers free up */
+        for (String division : divisions) {
+
+            if (aborted.get()) {
+                break;
+            }
+
+            try (Manifest manifest = new Manifest(manifestFile)) {
+
+                runDivision(manifest, division, index);
+
+                matches = manifest.getMatchCount();
+
+                for (String problem : manifest.getProblems()) {
+                    emit(-1, "warning", "division", division, "message", problem);
+                }
+
+                emit(-1, "manifest", "division", division, "message", manifest.report());
+
+            } catch (IOException e) {
+                emit(-1, "error", "message", e.getMessage());
+                return EXIT_MANIFEST;
+            }
+        }
+
+        /* Whatever got scraped is kept, even from a run that aborted */
+        if (index != null) {
+            try {
+                index.save(indexFile);
+                emit(-1, "index", "message", index.report());
+            } catch (IOException e) {
+                emit(-1, "error", "message", e.getMessage());
+            }
+        }
+
+        emit(-1, "summary", "matches", matches,
+                            "divisions", String.join(",", divisions),
+                            "failed", failed,
+                            "seconds", (System.nanoTime() - start) / 1e9,
+                            "status", aborted.get() ? "aborted" : "complete");
+
+        return aborted.get() ? EXIT_ABORTED : EXIT_OK;
+    }
+
+    /* Runs the manifest through a scheduler, concurrency matches at a time */
+    private void runDivision (Manifest manifest, String division, ShooterIndex index) {
+
+        MatchScheduler scheduler = new MatchScheduler(manifest, division, headless, concurrency);
+
+        scheduler.setJournalFile(journalFile);
+        scheduler.setRetryPolicy(retryPolicy);
+        scheduler.setCircuitBreaker(breaker);
+        scheduler.setFailureReport(new FailureReport(failuresFile));
+
+        if (rate > 0) {
+            scheduler.setRateLimiter(new RateLimiter(rate, burst));
+        }
+
+        scheduler.setWorkerSetup((id, scraper) -> {
+
+            scraper.setStagePages(stagePages);
+            scraper.setSnapshotMode(snapshot);
+            scraper.setPayloadMode(payload);
+            scraper.setOutputFormat(format);
+            scraper.setFeatureOutput(features);
+            scraper.setWriteQueue(writeQueue);
+            scraper.setForceRefresh(forceRefresh);
+            scraper.setShooterIndex(index, indexFile);
+            scraper.setIndexSaveInterval(indexEvery);
+
+            if (readinessTimeout >= 0) {
+                scraper.setReadinessTimeout(readinessTimeout);
+            }
+
+            /* Loading the page as a browser would is the default, blocking is asked for */
+            if (blockResources || auditBlocking) {
+                ResourcePolicy policy = new ResourcePolicy();
+                policy.setAudit(auditBlocking);
+                scraper.setResourcePolicy(policy);
+            }
+
+            if (cacheDir != null) {
+                HarCache cache = new HarCache(cacheDir);
+                cache.setOffline(offline);
+                scraper.setPageCache(cache);
+            }
+
+            scraper.addStateHandler(new StateHandler () {
+
+                @Override
+                public void handleStateEvt(StateEvt evt) {
+                    emit(id, "state", "division", division, "message", evt.getStateText());
+                }
+            });
+
+            scraper.addLifecycleHandler(new LifecycleHandler () {
+
+                @Override
+                public void handleLifecycleEvt(LifecycleEvt evt) {
+                    emit(id, "lifecycle", "division", division, "kind", evt.kind.name(), "message", evt.message);
+                }
+            });
+        });
+
+        /* Progress is for the division as a whole, and only moves forward */
+        scheduler.addProgressHandler(new ProgressHandler () {
+
+            @Override
+            public void handleProgressEvt(ProgressEvt evt) {
+                emit(-1, "progress", "division", division, "progress", evt.progress);
+            }
+        }, null);
+
+        scheduler.addLifecycleHandler(new LifecycleHandler () {
+
+            @Override
+            public void handleLifecycleEvt(LifecycleEvt evt) {
+                if (evt.kind == LifecycleEvt.Kind.ABORTED) {
+                    aborted.set(true);
+                }
+            }
+        }, null);
+
+        scheduler.run();
+
+        FailureReport report = scheduler.getFailureReport();
+
+        failed += report.getFailures();
+
+        emit(-1, "failures", "division", division, "count", report.getFailures(), "message", report.report());
+    }
+
+    private void parseArgs (String[] args) {
+
+        for (int idx = 0; idx < args.length; idx++) {
+
+            String arg = args[idx];
+
+            switch (arg) {
+
+                case "--divisions":
+                    for (String div : value(args, ++idx, arg).split(",")) {
+                        if (!div.trim().isEmpty()) {
+                            divisions.add(div.trim().toUpperCase());
+                        }
+                    }
+                    break;
+
+                case "--format":
+                    try {
+                        format = OutputFormat.valueOf(value(args, ++idx, arg).toUpperCase());
+                    } catch (IllegalArgumentException e) {
+                        throw new IllegalArgumentException(String.format("Unknown format %s", args[idx]));
+                    }
+                    break;
+
+                case "--concurrency":
+                    concurrency = intValue(args, ++idx, arg);
+                    break;
+
+                case "--stage-pages":
+                    stagePages = intValue(args, ++idx, arg);
+                    break;
+
+                case "--write-queue":
+                    writeQueue = intValue(args, ++idx, arg);
+                    break;
+
+                case "--rate":
+                    rate = doubleValue(args, ++idx, arg);
+                    break;
+
+                case "--burst":
+                    burst = intValue(args, ++idx, arg);
+                    break;
+
+                case "--readiness-timeout":
+                    readinessTimeout = intValue(args, ++idx, arg);
+                    break;
+
+                case "--table-timeout":
+                    retryPolicy.setTableTimeout(intValue(args, ++idx, arg));
+                    break;
+
+                case "--stage-attempts":
+                    retryPolicy.setStageAttempts(intValue(args, ++idx, arg));
+                    break;
+
+                case "--match-attempts":
+                    retryPolicy.setMatchAttempts(intValue(args, ++idx, arg));
+                    break;
+
+                case "--failures":
+                    failuresFile = new File(value(args, ++idx, arg));
+                    break;
+
+                case "--journal":
+                    journalFile = new File(value(args, ++idx, arg));
+                    break;
+
+                case "--cache":
+                    cacheDir = new File(value(args, ++idx, arg));
+                    break;
+
+                case "--index":
+                    indexFile = new File(value(args, ++idx, arg));
+                    break;
+
+                case "--index-every":
+                    indexEvery = intValue(args, ++idx, arg);
+                    break;
+
+                case "--no-journal":      journalFile    = null;  break;
+                case "--snapshot":        snapshot       = true;  break;
+                case "--payload":         payload        = true;  break;
+                case "--features":        features       = true;  break;
+                case "--headful":         headless       = false; break;
+                case "--force-refresh":   forceRefresh   = true;  break;
+                case "--offline":         offline        = true;  break;
+                case "--block-resources": blockResources = true;  break;
+                case "--audit-blocking":  auditBlocking  = true;  break;
+
+                default:
+                    if (arg.startsWith("--") || manifestPath != null) {
+                        throw new IllegalArgumentException(String.format("Unexpected argument %s", arg));
+                    }
+                    manifestPath = arg;
+                    break;
+            }
+        }
+
+        if (manifestPath == null) {
+            throw new IllegalArgumentException("No manifest given.");
+        }
+
+        if (divisions.isEmpty()) {
+            divisions.add("CO");
+        }
+
+        for (String div : divisions) {
+            if (!DIVISIONS.contains(div)) {
+                throw new IllegalArgumentException(String.format("Unknown division %s", div));
+            }
+        }
+
+        /* ALL writes <match>_<DIV> for every division itself, another pass would share its files */
+        if (divisions.contains("ALL") && divisions.size() > 1) {
+            throw new IllegalArgumentException("ALL already covers every division, it can't be combined with others.");
+        }
+
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Concurrency must be at least 1.");
+        }
+
+        if (stagePages < 1) {
+            throw new IllegalArgumentException("Stage pages must be at least 1.");
+        }
+
+        if (rate < 0 || burst < 1) {
+            throw new IllegalArgumentException("Rate can't be negative, and burst must be at least 1.");
+        }
+    }
+
+    private static String value (String[] args, int idx, String flag) {
+
+        if (idx >= args.length) {
+            throw new IllegalArgumentException(String.format("%s needs a value.", flag));
+        }
+
+        return args[idx];
+    }
+
+    private static int intValue (String[] args, int idx, String flag) {
+
+        try {
+            return Integer.parseInt(value(args, idx, flag));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(String.format("%s needs a number.", flag));
+        }
+    }
+
+    private static double doubleValue (String[] args, int idx, String flag) {
+
+        try {
+            return Double.parseDouble(value(args, idx, flag));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(String.format("%s needs a number.", flag));
+        }
+    }
+
+    /**
+     * Writes one JSON object per line. Fields come in name/value pairs;
+     * numbers and booleans are written bare, everything else as a string.
+     */
+    private static void emit (int worker, String type, Object... fields) {
+
+        StringBuilder json = new StringBuilder(128);
+
+        json.append("{\"type\":");
+        quote(json, type);
+
+        if (worker >= 0) {
+            json.append(",\"worker\":").append(worker);
+        }
+
+        for (int idx = 0; idx + 1 < fields.length; idx += 2) {
+
+            json.append(',');
+            quote(json, String.valueOf(fields[idx]));
+            json.append(':');
+
+            Object value = fields[idx + 1];
+
+            if (value instanceof Number || value instanceof Boolean) {
+                json.append(value);
+            } else {
+                quote(json, String.valueOf(value));
+            }
+        }
+
+        json.append('}');
+
+        synchronized (out) {
+            out.println(json);
+        }
+    }
+
+    private static void quote (StringBuilder json, String str) {
+
+        json.append('"');
+
+        for (int idx = 0; idx < str.length(); idx++) {
+
+            char c = str.charAt(idx);
+
+            switch (c) {
+                case '"':  json.append("\\\""); break;
+                case '\\': json.append("\\\\"); break;
+                case '\n': json.append("\\n");  break;
+                case '\r': json.append("\\r");  break;
+                case '\t': json.append("\\t");  break;
+                default:
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+                    break;
+            }
+        }
+
+        json.append('"');
+    }
+}
@@ -4,23 +4,22 @@
  */
 package pscraper;
 
+import Handlers.LifecycleHandler;
 import Handlers.ProgressHandler;
 import Handlers.StateHandler;
+import Events.LifecycleEvt;
 import Events.StateEvt;
 import Events.ProgressEvt;
-import java.util.ArrayList;
+import java.awt.EventQueue;
 import java.util.Enumeration;
-import java.util.List;
 
 import javax.swing.AbstractButton;
 import javax.swing.ButtonGroup;
 
 import com.formdev.flatlaf.FlatDarculaLaf;
 
-import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
-import java.io.IOException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.swing.JFileChooser;
@@ -38,10 +37,8 @@ public class ScraperGUI extends javax.swing.JFrame {
 
     private PractiScoreScraper scraper = null;
 
-    private List<Match> matches;
-
-    private final int FNAME_IDX  = 0;
-    private final int URL_IDX    = 1;
+    /* Read as the scrape goes, and closed when it stops */
+    private Manifest manifest = null;
 
     /**
      * Creates new form ScraperGUI
@@ -52,8 +49,6 @@ public class ScraperGUI extends javax.swing.JFrame {
         progressBar.setMaximum(100);
         progressBar.setMinimum(0);
         progressBar.setStringPainted(true);
-
-        matches = new ArrayList<>();
     }
 
     /* State and Progress Event Handlers */
@@ -69,21 +64,25 @@ public class ScraperGUI extends javax.swing.JFrame {
         
         @Override
         public void handleStateEvt(StateEvt evt){
+            stateText.setText(evt.getStateText());
+        }
+    };
 
-            if(evt.stateText.contains("KILL")) {
-                killScraper();
-            
-            } else if (evt.stateText.contains("COMPLETE")) {
-                stateText.setText("Scrape complete!");
-                scrapeButton.setText("Scrape!");;
-                running = false;
+    LifecycleHandler lifecycleHandler = new LifecycleHandler () {
 
-                scraper       = null;
-                scraperThread = null;
+        @Override
+        public void handleLifecycleEvt(LifecycleEvt evt){
 
-            } else {
-                stateText.setText(evt.stateText);
-            }
+            stateText.setText(evt.message);
+            scrapeButton.setText("Scrape!");
+
+            /* Either way the scraper has closed its files by now, on its own thread */
+            running = false;
+
+            closeManifest();
+
+            scraper       = null;
+            scraperThread = null;
         }
     };
 
@@ -107,6 +106,7 @@ public class ScraperGUI extends javax.swing.JFrame {
         stateLabel = new javax.swing.JLabel();
         stateText = new javax.swing.JLabel();
         headlessMode = new javax.swing.JRadioButton();
+        forceRefresh = new javax.swing.JRadioButton();
         coButton = new javax.swing.JRadioButton();
         lButton = new javax.swing.JRadioButton();
         loButton = new javax.swing.JRadioButton();
@@ -114,6 +114,7 @@ public class ScraperGUI extends javax.swing.JFrame {
         pccButton = new javax.swing.JRadioButton();
         pButton = new javax.swing.JRadioButton();
         ssButton = new javax.swing.JRadioButton();
+        allButton = new javax.swing.JRadioButton();
 
         setDefaultCloseOperation(javax.swing.WindowConstants.EXIT_ON_CLOSE);
         setTitle("PractiScore Scraper");
@@ -181,7 +182,7 @@ public class ScraperGUI extends javax.swing.JFrame {
         gridBagConstraints = new java.awt.GridBagConstraints();
         gridBagConstraints.gridx = 1;
         gridBagConstraints.gridy = 2;
-        gridBagConstraints.gridwidth = 6;
+        gridBagConstraints.gridwidth = 7;
         gridBagConstraints.fill = java.awt.GridBagConstraints.HORIZONTAL;
         gridBagConstraints.weightx = 1.0;
         gridBagConstraints.insets = new java.awt.Insets(5, 5, 5, 5);
@@ -196,11 +197,20 @@ public class ScraperGUI extends javax.swing.JFrame {
         gridBagConstraints = new java.awt.GridBagConstraints();
         gridBagConstraints.gridx = 0;
         gridBagConstraints.gridy = 1;
-        gridBagConstraints.gridwidth = 7;
+        gridBagConstraints.gridwidth = 4;
         gridBagConstraints.weightx = 1.0;
         gridBagConstraints.insets = new java.awt.Insets(5, 5, 0, 5);
         statePanel.add(headlessMode, gridBagConstraints);
 
+        forceRefresh.setText("Force Refresh");
+        gridBagConstraints = new java.awt.GridBagConstraints();
+        gridBagConstraints.gridx = 4;
+        gridBagConstraints.gridy = 1;
+        gridBagConstraints.gridwidth = 4;
+        gridBagConstraints.weightx = 1.0;
+        gridBagConstraints.insets = new java.awt.Insets(5, 5, 0, 5);
+        statePanel.add(forceRefresh, gridBagConstraints);
+
         divisonGroup.add(coButton);
         coButton.setSelected(true);
         coButton.setText("CO");
@@ -265,6 +275,15 @@ public class ScraperGUI extends javax.swing.JFrame {
         gridBagConstraints.insets = new java.awt.Insets(5, 0, 5, 5);
         statePanel.add(ssButton, gridBagConstraints);
 
+        divisonGroup.add(allButton);
+        allButton.setText("ALL");
+        gridBagConstraints = new java.awt.GridBagConstraints();
+        gridBagConstraints.gridx = 7;
+        gridBagConstraints.gridy = 0;
+        gridBagConstraints.fill = java.awt.GridBagConstraints.HORIZONTAL;
+        gridBagConstraints.insets = new java.awt.Insets(5, 0, 5, 5);
+        statePanel.add(allButton, gridBagConstraints);
+
         gridBagConstraints = new java.awt.GridBagConstraints();
         gridBagConstraints.gridx = 1;
         gridBagConstraints.gridy = 7;
@@ -286,31 +305,8 @@ public class ScraperGUI extends javax.swing.JFrame {
                 
                 String file = inputField.getText();
     
-                BufferedReader reader = new BufferedReader(new FileReader(file));
-
-                String [] lineData;
-                
-                String line = reader.readLine();
-                
-                while(line != null) {
-
-                    lineData = line.split(",");
-
-                    /* Validate Input */
-                    if (!lineData[URL_IDX].contains("https://practiscore.com/results/")) {
-                        stateText.setText("Invalid URL Passed. Check URLs.");
-                        return;
-                    }
-
-                    Match match = new Match(lineData[FNAME_IDX],lineData[URL_IDX]);
-
-                    matches.add(match);
-                    
-                    line = reader.readLine();
-
-                }
-                
-                reader.close();
+                /* Matches are read as the scraper gets to them, and bad lines are skipped and reported */
+                manifest = new Manifest(new File(file));
     
                 boolean headless = headlessMode.isSelected();
     
@@ -319,10 +315,15 @@ public class ScraperGUI extends javax.swing.JFrame {
                 /* File handling will occur in scraper constructor */
     
                 /* Create the thread, add the listeners, and launch */
-                scraper = new PractiScoreScraper(matches, division, headless);
+                scraper = new PractiScoreScraper(manifest, division, headless);
+
+                /* Matches finished in earlier runs are skipped unless asked otherwise */
+                scraper.setForceRefresh(forceRefresh.isSelected());
     
-                scraper.addProgressHandler(progHandler);
-                scraper.addStateHandler(stateHandler);
+                /* Handlers touch Swing components, so they run on the EDT */
+                scraper.addProgressHandler(progHandler, EventQueue::invokeLater);
+                scraper.addStateHandler(stateHandler, EventQueue::invokeLater);
+                scraper.addLifecycleHandler(lifecycleHandler, EventQueue::invokeLater);
     
                 scraperThread = new Thread(scraper);
                 
@@ -333,9 +334,9 @@ public class ScraperGUI extends javax.swing.JFrame {
     
             } else {
     
+                /* Still running until the scraper reports back, so a new scrape can't start over it */
                 killScraper();
-                stateText.setText("Idle");
-                scrapeButton.setText("Scrape!");
+                stateText.setText("Stopping. . .");
     
             }
 
@@ -362,21 +363,22 @@ public class ScraperGUI extends javax.swing.JFrame {
         }
     }//GEN-LAST:event_headlessModeMouseClicked
 
+    /* Only asks the scraper to stop, the lifecycle handler cleans up once it has */
     private void killScraper () {
 
-        /* Interrupt the thread and null everything out */
-        try {
-            scraperThread.interrupt();
-        } catch (Exception e) {}
+        if (scraper != null) {
+            scraper.cancel();
+        }
+    }
 
-        try {
-            scraper.fwriter.close();
-        } catch (IOException ex) {}
-        
-        scraperThread = null;
-        scraper       = null;
+    private void closeManifest () {
 
-        running = false;
+        if (manifest != null) {
+            try {
+                manifest.close();
+            } catch (Exception e) {}
+            manifest = null;
+        }
     }
 
     public String getSelectedButtonText(ButtonGroup buttonGroup) {
@@ -416,8 +418,10 @@ public class ScraperGUI extends javax.swing.JFrame {
     }
 
     // Variables declaration - do not modify//GEN-BEGIN:variables
+    private javax.swing.JRadioButton allButton;
     private javax.swing.JRadioButton coButton;
     private javax.swing.ButtonGroup divisonGroup;
+    private javax.swing.JRadioButton forceRefresh;
     private javax.swing.JRadioButton headlessMode;
     private javax.swing.JTextField inputField;
     private javax.swing.JRadioButton lButton;
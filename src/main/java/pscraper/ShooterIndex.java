@@ -0,0 +1,507 @@
+package pscraper;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ *
+ * @author Asmod
+ *
+ * @brief Every scraped stage result, keyed by shooter, match and division.
+ *
+ *        Results live in parallel primitive columns, one slot per shooter per
+ *        stage, with the metrics as floats in RowSink.COLUMNS order. Shooters,
+ *        matches and divisions get dense ids from IdTables, and each id keeps
+ *        an IntList of its entries in the order they were added. A lookup is
+ *        a hash probe and a copy of that list, with no boxing anywhere.
+ *
+ *        A shooter is keyed by member number, or by name when there isn't
+ *        one. Saving writes the string tables and columns as they are. The
+ *        id lists are rebuilt on load with one pass over the columns. Each
+ *        match/division is marked once all of it has been added, so a
+ *        scraper can tell a match its journal finished but the saved index
+ *        never got.
+ *
+ *        File layout, big-endian:
+ *
+ *          "PSIDX002"
+ *          int32 metric columns
+ *          string table: shooter keys, then the matching display names
+ *          string table: match URLs
+ *          string table: division codes
+ *          string table: finished "url<TAB>division" pairs
+ *          int32 entries, then per column: shooter int32[], match int32[],
+ *          stage int16[], division int8[], metrics float32[entries * columns]
+ *
+ *        A string table is an int32 count followed by that many UTF strings.
+ *        "PSIDX001" files, without the finished pairs, still load, with
+ *        every match/division that has entries taken as finished.
+ *
+ *        All methods are synchronized, so scheduler workers can share one.
+ *        save only holds the lock while it takes the string tables and the
+ *        column lengths, and writes the columns outside it.
+ */
+public class ShooterIndex {
+
+    private static final byte[] MAGIC    = { 'P', 'S', 'I', 'D', 'X', '0', '0', '2' };
+    private static final byte[] MAGIC_V1 = { 'P', 'S', 'I', 'D', 'X', '0', '0', '1' };
+
+    /* Columns are written through a buffer this big, however large the index */
+    private static final int CHUNK = 1 << 16;
+
+    public static final int COLUMNS = RowSink.COLUMNS.length;
+
+    private final IdTable      shooters  = new IdTable();
+    private final List<String> names     = new ArrayList<>();
+    private final IdTable      matches   = new IdTable();
+    private final IdTable      divisions = new IdTable();
+    private final Set<String>  finished  = new LinkedHashSet<>();
+
+    /* Keeps saves in order, so an older snapshot never lands over a newer one */
+    private final Object saveLock = new Object();
+
+    private final List<IntList> byShooter  = new ArrayList<>();
+    private final List<IntList> byMatch    = new ArrayList<>();
+    private final List<IntList> byDivision = new ArrayList<>();
+
+    /* Entry columns */
+    private int     size       = 0;
+    private int[]   shooterCol = new int[1024];
+    private int[]   matchCol   = new int[1024];
+    private short[] stageCol   = new short[1024];
+    private byte[]  divCol     = new byte[1024];
+    private float[] metricCol  = new float[1024 * COLUMNS];
+
+    /**
+     * Adds one shooter's stage. metrics holds COLUMNS values, as written to
+     * the output files. Returns the entry, or -1 if there's nothing to key
+     * the shooter by.
+     */
+    public synchronized int add (String matchUrl, int stage, String division,
+                                 String memberNumber, String name, double[] metrics) {
+
+        String key = shooterKey(memberNumber, name);
+
+        if (key == null) {
+            return -1;
+        }
+
+        int shooter = shooters.intern(key);
+
+        stage = Math.min(stage, Short.MAX_VALUE);
+
+        if (shooter == names.size()) {
+            names.add((name == null) ? "" : name.trim());
+            byShooter.add(new IntList());
+        }
+
+        int match = matches.intern(matchUrl);
+
+        if (match == byMatch.size()) {
+            byMatch.add(new IntList());
+        }
+
+        int div = divisions.intern((division == null) ? "" : division);
+
+        if (div == byDivision.size()) {
+            byDivision.add(new IntList());
+        }
+
+        /* A match scraped again replaces what it gave before, a shooter entered in two divisions keeps both */
+        IntList own = byShooter.get(shooter);
+
+        for (int idx = own.size() - 1; idx >= 0; idx--) {
+
+            int entry = own.get(idx);
+
+            if (matchCol[entry] == match && stageCol[entry] == stage && divCol[entry] == div) {
+                setMetrics(entry, metrics);
+                return entry;
+            }
+        }
+
+        ensureCapacity(size + 1);
+
+        int entry = size++;
+
+        shooterCol[entry] = shooter;
+        matchCol[entry]   = match;
+        stageCol[entry]   = (short) stage;
+        divCol[entry]     = (byte) div;
+
+        setMetrics(entry, metrics);
+
+        byShooter.get(shooter).add(entry);
+        byMatch.get(match).add(entry);
+        byDivision.get(div).add(entry);
+
+        return entry;
+    }
+
+    private void setMetrics (int entry, double[] metrics) {
+        for (int col = 0; col < COLUMNS; col++) {
+            metricCol[entry * COLUMNS + col] = (float) metrics[col];
+        }
+    }
+
+    /* Records that every stage of a match/division has been added */
+    public synchronized void markMatch (String matchUrl, String division) {
+        finished.add(matchUrl + '\t' + division);
+    }
+
+    /* Forgets that a match/division finished, while it's being scraped again */
+    public synchronized void unmarkMatch (String matchUrl, String division) {
+        finished.remove(matchUrl + '\t' + division);
+    }
+
+    public synchronized boolean hasMatch (String matchUrl, String division) {
+        return finished.contains(matchUrl + '\t' + division);
+    }
+
+    /* Member number if there is one, otherwise the name, or null with neither */
+    static String shooterKey (String memberNumber, String name) {
+
+        if (memberNumber != null && !memberNumber.trim().isEmpty()) {
+            return memberNumber.trim().toUpperCase();
+        }
+
+        if (name != null && !name.trim().isEmpty()) {
+            return "NAME:" + name.trim().toUpperCase();
+        }
+
+        return null;
+    }
+
+    /* Entries for a shooter, by member number or name */
+    public synchronized int[] forShooter (String memberNumber, String name) {
+
+        String key = shooterKey(memberNumber, name);
+        int    id  = (key == null) ? -1 : shooters.get(key);
+
+        return (id < 0) ? new int[0] : byShooter.get(id).toArray();
+    }
+
+    public synchronized int[] forMatch (String matchUrl) {
+
+        int id = matches.get(matchUrl);
+
+        return (id < 0) ? new int[0] : byMatch.get(id).toArray();
+    }
+
+    public synchronized int[] forDivision (String division) {
+
+        int id = divisions.get(division);
+
+        return (id < 0) ? new int[0] : byDivision.get(id).toArray();
+    }
+
+    /* One metric over a shooter's entries, in the order they were scraped, e.g. an HF trend */
+    public synchronized float[] series (String memberNumber, String name, int column) {
+
+        int[]   entries = forShooter(memberNumber, name);
+        float[] values  = new float[entries.length];
+
+        for (int idx = 0; idx < entries.length; idx++) {
+            values[idx] = metricCol[entries[idx] * COLUMNS + column];
+        }
+
+        return values;
+    }
+
+    public synchronized float metric (int entry, int column) {
+        return metricCol[check(entry) * COLUMNS + column];
+    }
+
+    public synchronized int stage (int entry) {
+        return stageCol[check(entry)];
+    }
+
+    public synchronized String match (int entry) {
+        return matches.key(matchCol[check(entry)]);
+    }
+
+    public synchronized String division (int entry) {
+        return divisions.key(divCol[check(entry)]);
+    }
+
+    public synchronized String shooterName (int entry) {
+        return names.get(shooterCol[check(entry)]);
+    }
+
+    public synchronized int size () {
+        return size;
+    }
+
+    public synchronized int shooterCount () {
+        return shooters.size();
+    }
+
+    public synchronized String report () {
+        return String.format("Shooter index: %d result(s) for %d shooter(s) over %d match(es).",
+                             size, shooters.size(), matches.size());
+    }
+
+    /**
+     * Writes the index aside and moves it over file, so a crash never leaves
+     * half an index or none at all. Entries are only ever appended, and the
+     * only ones changed in place belong to a match being scraped again. That
+     * match is unmarked until it finishes, so a save racing with it can only
+     * catch rows the next run redoes anyway.
+     */
+    public void save (File file) throws IOException {
+
+        synchronized (saveLock) {
+
+            String[] shooterKeys;
+            String[] shooterNames;
+            String[] matchKeys;
+            String[] divisionKeys;
+            String[] finishedKeys;
+
+            int[]   shooterRef;
+            int[]   matchRef;
+            short[] stageRef;
+            byte[]  divRef;
+            float[] metricRef;
+            int     count;
+
+            /* Everything up to size stays put once written, so only the references are taken under the lock */
+            synchronized (this) {
+
+                shooterKeys  = keys(shooters);
+                shooterNames = names.toArray(new String[0]);
+                matchKeys    = keys(matches);
+                divisionKeys = keys(divisions);
+                finishedKeys = finished.toArray(new String[0]);
+
+                shooterRef = shooterCol;
+                matchRef   = matchCol;
+                stageRef   = stageCol;
+                divRef     = divCol;
+                metricRef  = metricCol;
+                count      = size;
+            }
+
+            File tmp = new File(file.getPath() + ".tmp");
+
+            FileOutputStream fos = new FileOutputStream(tmp);
+
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos, CHUNK))) {
+
+                out.write(MAGIC);
+                out.writeInt(COLUMNS);
+
+                writeStrings(out, shooterKeys);
+
+                for (String name : shooterNames) {
+                    out.writeUTF(name);
+                }
+
+                writeStrings(out, matchKeys);
+                writeStrings(out, divisionKeys);
+                writeStrings(out, finishedKeys);
+
+                out.writeInt(count);
+
+                ByteBuffer buf = ByteBuffer.allocate(CHUNK);
+
+                for (int from = 0; from < count; from += CHUNK / 4) {
+                    int len = Math.min(CHUNK / 4, count - from);
+                    buf.asIntBuffer().put(shooterRef, from, len);
+                    out.write(buf.array(), 0, len * 4);
+                }
+
+                for (int from = 0; from < count; from += CHUNK / 4) {
+                    int len = Math.min(CHUNK / 4, count - from);
+                    buf.asIntBuffer().put(matchRef, from, len);
+                    out.write(buf.array(), 0, len * 4);
+                }
+
+                for (int from = 0; from < count; from += CHUNK / 2) {
+                    int len = Math.min(CHUNK / 2, count - from);
+                    buf.asShortBuffer().put(stageRef, from, len);
+                    out.write(buf.array(), 0, len * 2);
+                }
+
+                out.write(divRef, 0, count);
+
+                for (int from = 0; from < count * COLUMNS; from += CHUNK / 4) {
+                    int len = Math.min(CHUNK / 4, count * COLUMNS - from);
+                    buf.asFloatBuffer().put(metricRef, from, len);
+                    out.write(buf.array(), 0, len * 4);
+                }
+
+                /* On disk before the move, or a crash could swap in an empty file */
+                out.flush();
+                fos.getFD().sync();
+            }
+
+            try {
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+    }
+
+    public static ShooterIndex load (File file) throws IOException {
+
+        ShooterIndex index = new ShooterIndex();
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+
+            byte[] magic = new byte[MAGIC.length];
+
+            in.readFully(magic);
+
+            boolean v1 = Arrays.equals(magic, MAGIC_V1);
+
+            if ((!v1 && !Arrays.equals(magic, MAGIC)) || in.readInt() != COLUMNS) {
+                throw new IOException(String.format("%s is not a shooter index.", file.getName()));
+            }
+
+            int shooterCount = readStrings(in, index.shooters);
+
+            for (int idx = 0; idx < shooterCount; idx++) {
+                index.names.add(in.readUTF());
+                index.byShooter.add(new IntList());
+            }
+
+            for (int idx = readStrings(in, index.matches); idx > 0; idx--) {
+                index.byMatch.add(new IntList());
+            }
+
+            for (int idx = readStrings(in, index.divisions); idx > 0; idx--) {
+                index.byDivision.add(new IntList());
+            }
+
+            if (!v1) {
+                for (int idx = in.readInt(); idx > 0; idx--) {
+                    index.finished.add(in.readUTF());
+                }
+            }
+
+            int size = in.readInt();
+
+            index.ensureCapacity(size);
+
+            byte[] buf = new byte[CHUNK];
+
+            for (int from = 0; from < size; from += CHUNK / 4) {
+                int len = Math.min(CHUNK / 4, size - from);
+                in.readFully(buf, 0, len * 4);
+                ByteBuffer.wrap(buf).asIntBuffer().get(index.shooterCol, from, len);
+            }
+
+            for (int from = 0; from < size; from += CHUNK / 4) {
+                int len = Math.min(CHUNK / 4, size - from);
+                in.readFully(buf, 0, len * 4);
+                ByteBuffer.wrap(buf).asIntBuffer().get(index.matchCol, from, len);
+            }
+
+            for (int from = 0; from < size; from += CHUNK / 2) {
+                int len = Math.min(CHUNK / 2, size - from);
+                in.readFully(buf, 0, len * 2);
+                ByteBuffer.wrap(buf).asShortBuffer().get(index.stageCol, from, len);
+            }
+
+            in.readFully(index.divCol, 0, size);
+
+            for (int from = 0; from < size * COLUMNS; from += CHUNK / 4) {
+                int len = Math.min(CHUNK / 4, size * COLUMNS - from);
+                in.readFully(buf, 0, len * 4);
+                ByteBuffer.wrap(buf).asFloatBuffer().get(index.metricCol, from, len);
+            }
+
+            /* Rebuild the id lists */
+            for (int idx = 0; idx < size; idx++) {
+                index.byShooter.get(index.shooterCol[idx]).add(idx);
+                index.byMatch.get(index.matchCol[idx]).add(idx);
+                index.byDivision.get(index.divCol[idx]).add(idx);
+
+                /* Version 1 only ever saved finished matches */
+                if (v1) {
+                    index.finished.add(index.matches.key(index.matchCol[idx]) + '\t' + index.divisions.key(index.divCol[idx]));
+                }
+            }
+
+            index.size = size;
+
+        } catch (IndexOutOfBoundsException | NegativeArraySizeException | BufferUnderflowException e) {
+            throw new IOException(String.format("%s is corrupt.", file.getName()));
+        }
+
+        return index;
+    }
+
+    private int check (int entry) {
+
+        if (entry < 0 || entry >= size) {
+            throw new IndexOutOfBoundsException(String.format("Entry %d of %d", entry, size));
+        }
+
+        return entry;
+    }
+
+    private void ensureCapacity (int needed) {
+
+        if (needed <= shooterCol.length) {
+            return;
+        }
+
+        int capacity = Math.max(needed, shooterCol.length * 2);
+
+        shooterCol = Arrays.copyOf(shooterCol, capacity);
+        matchCol   = Arrays.copyOf(matchCol,   capacity);
+        stageCol   = Arrays.copyOf(stageCol,   capacity);
+        divCol     = Arrays.copyOf(divCol,     capacity);
+        metricCol  = Arrays.copyOf(metricCol,  capacity * COLUMNS);
+    }
+
+    private static String[] keys (IdTable table) {
+
+        String[] keys = new String[table.size()];
+
+        for (int id = 0; id < keys.length; id++) {
+            keys[id] = table.key(id);
+        }
+
+        return keys;
+    }
+
+    private static void writeStrings (DataOutputStream out, String[] strings) throws IOException {
+
+        out.writeInt(strings.length);
+
+        for (String string : strings) {
+            out.writeUTF(string);
+        }
+    }
+
+    private static int readStrings (DataInputStream in, IdTable table) throws IOException {
+
+        int count = in.readInt();
+
+        for (int idx = 0; idx < count; idx++) {
+            table.intern(in.readUTF());
+        }
+
+        return count;
+    }
+}
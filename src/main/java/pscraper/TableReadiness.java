@@ -0,0 +1,123 @@
+package pscraper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.microsoft.playwright.Page;
+import com.microsoft.playwright.TimeoutError;
+
+/**
+ *
+ * @author Asmod
+ * 
+ * @brief Waits for the results table to actually re-render after a
+ *        division or stage selection, instead of sleeping a fixed time.
+ * 
+ *        The table is fingerprinted (row count plus a hash of its text)
+ *        before the selection. Afterwards we poll in the page until the
+ *        fingerprint differs from the old one and has held steady for two
+ *        polls. The wait is capped, and every settle time is recorded.
+ */
+public class TableReadiness {
+
+    /* Row count plus a 32 bit hash of the table text, or "" if it isn't there */
+    private static final String FINGERPRINT_JS =
+        "() => { const t = document.querySelector('#mainResultsTable');" +
+        " if (!t) return '';" +
+        " const s = t.textContent; let h = 0;" +
+        " for (let i = 0; i < s.length; i++) { h = (h * 31 + s.charCodeAt(i)) | 0; }" +
+        " return t.rows.length + ':' + h; }";
+
+    /* True once the fingerprint has moved off prev and matched on two polls in a row */
+    private static final String SETTLED_JS =
+        "prev => { const f = (" + FINGERPRINT_JS + ")();" +
+        " if (f === '' || f === prev) return false;" +
+        " const last = window.__psFingerprint; window.__psFingerprint = f;" +
+        " return last === f; }";
+
+    private long   maxWaitMillis = 5000;
+    private double pollMillis    = 50;
+
+    private final List<Long> settleTimes = new ArrayList<>();
+
+    private int timeouts = 0;
+
+    public void setMaxWaitMillis (long maxWaitMillis) {
+        this.maxWaitMillis = maxWaitMillis;
+    }
+
+    public void setPollMillis (double pollMillis) {
+        this.pollMillis = pollMillis;
+    }
+
+    public String fingerprint (Page page) {
+        return (String) page.evaluate(FINGERPRINT_JS);
+    }
+
+    /**
+     * Blocks until the table no longer matches the previous fingerprint,
+     * or the upper bound runs out. Either way the elapsed time is recorded
+     * and returned, and running out is counted in getTimeouts() for the
+     * caller to act on. A previous fingerprint of "" waits for the table to
+     * be drawn at all.
+     */
+    public long awaitChange (Page page, String previous) {
+        return awaitChange(page, previous, maxWaitMillis);
+    }
+
+    /* The same, with a bound of its own, for a caller giving a slow page longer than the cap */
+    public long awaitChange (Page page, String previous, long maxWaitMillis) {
+
+        long start = System.nanoTime();
+
+        page.evaluate("() => { window.__psFingerprint = undefined; }");
+
+        try {
+            page.waitForFunction(SETTLED_JS, previous,
+                                 new Page.WaitForFunctionOptions()
+                                        .setTimeout(maxWaitMillis)
+                                        .setPollingInterval(pollMillis));
+        } catch (TimeoutError e) {
+            timeouts++;
+        }
+
+        long elapsed = (System.nanoTime() - start) / 1000000;
+
+        settleTimes.add(elapsed);
+
+        return elapsed;
+    }
+
+    public int getTimeouts () {
+        return timeouts;
+    }
+
+    public List<Long> getSettleTimes () {
+        return Collections.unmodifiableList(settleTimes);
+    }
+
+    public String report () {
+
+        if (settleTimes.isEmpty()) {
+            return "No table settles recorded.";
+        }
+
+        List<Long> sorted = new ArrayList<>(settleTimes);
+        Collections.sort(sorted);
+
+        long total = 0;
+        for (long t : sorted) {
+            total += t;
+        }
+
+        return String.format("Table settles: %d, mean %d ms, p50 %d ms, p95 %d ms, max %d ms, %d hit the %d ms cap.",
+                             sorted.size(),
+                             total / sorted.size(),
+                             sorted.get(sorted.size() / 2),
+                             sorted.get((int) Math.min(sorted.size() - 1, Math.round(sorted.size() * 0.95))),
+                             sorted.get(sorted.size() - 1),
+                             timeouts,
+                             maxWaitMillis);
+    }
+}
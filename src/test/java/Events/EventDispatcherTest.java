@@ -0,0 +1,75 @@
+package Events;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+/**
+ *
+ * @author Asmod
+ *
+ * @brief Order of the state messages an EventDispatcher delivers.
+ */
+public class EventDispatcherTest {
+
+    /* Publishes everything before the thread starts, so it all lands in one dispatch */
+    private static List<String> deliver (StateEvt... evts) {
+
+        List<String> seen = new ArrayList<>();
+
+        EventDispatcher events = new EventDispatcher();
+
+        events.addStateHandler(evt -> seen.add(evt.getStateText()), null);
+
+        for (StateEvt evt : evts) {
+            events.publishState(evt);
+        }
+
+        events.start();
+        events.close();
+
+        return seen;
+    }
+
+    @Test
+    public void transientStateKeepsItsPlace () {
+
+        List<String> seen = deliver(new StateEvt(true, "capturing 1"),
+                                    new StateEvt("stage done"));
+
+        assertEquals(Arrays.asList("capturing 1", "stage done"), seen);
+    }
+
+    @Test
+    public void coalescedTransientStateNeverFollowsANewerOne () {
+
+        List<String> seen = deliver(new StateEvt(true, "capturing 1"),
+                                    new StateEvt("stage 1 done"),
+                                    new StateEvt(true, "capturing 2"),
+                                    new StateEvt("stage 2 done"));
+
+        assertEquals(Arrays.asList("stage 1 done", "capturing 2", "stage 2 done"), seen);
+    }
+
+    @Test
+    public void brokenHandlerDoesNotStopDelivery () {
+
+        List<String> seen = new ArrayList<>();
+
+        EventDispatcher events = new EventDispatcher();
+
+        events.addStateHandler(evt -> { throw new IllegalStateException("broken"); }, null);
+        events.addStateHandler(evt -> seen.add(evt.getStateText()), null);
+
+        events.publishState(new StateEvt("one"));
+        events.publishState(new StateEvt("two"));
+
+        events.start();
+        events.close();
+
+        assertEquals(Arrays.asList("one", "two"), seen);
+    }
+}
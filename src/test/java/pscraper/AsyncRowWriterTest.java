@@ -0,0 +1,138 @@
+package pscraper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+
+/**
+ *
+ * @author Asmod
+ *
+ * @brief AsyncRowWriter getting every queued row out, in order, and
+ *        passing a sink's failure back to the scraper.
+ */
+public class AsyncRowWriterTest {
+
+    /* Keeps the first value of every row, slowly enough that rows pile up behind it */
+    private static class SlowSink implements RowSink {
+
+        final List<Double> seen = Collections.synchronizedList(new ArrayList<>());
+
+        final int failAt;
+
+        SlowSink (int failAt) {
+            this.failAt = failAt;
+        }
+
+        @Override
+        public void writeRow (double[] row, int len) throws IOException {
+
+            if (seen.size() == failAt) {
+                throw new IOException("Disk full.");
+            }
+
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            seen.add(row[0]);
+        }
+
+        @Override
+        public void flush () {
+        }
+
+        @Override
+        public long commit () {
+            return 0;
+        }
+
+        @Override
+        public void close () {
+        }
+    }
+
+    @Test
+    public void closeDrainsEveryQueuedRowInOrder () throws IOException {
+
+        SlowSink sink = new SlowSink(-1);
+
+        AsyncRowWriter writer = new AsyncRowWriter(8, 2, new ScrapeMetrics());
+
+        /* Far more rows than slots, so write() blocks on a full ring along the way */
+        for (int idx = 0; idx < 200; idx++) {
+            writer.write(sink, new double[] { idx, -idx }, 2, "CO");
+        }
+
+        writer.close();
+
+        assertEquals(200, sink.seen.size());
+
+        for (int idx = 0; idx < 200; idx++) {
+            assertEquals(idx, sink.seen.get(idx), 0);
+        }
+
+        assertEquals(0, writer.depth());
+    }
+
+    @Test
+    public void syncWaitsForRowsAlreadyQueued () throws IOException {
+
+        SlowSink sink = new SlowSink(-1);
+
+        AsyncRowWriter writer = new AsyncRowWriter(64, 1, new ScrapeMetrics());
+
+        for (int idx = 0; idx < 50; idx++) {
+            writer.write(sink, new double[] { idx }, 1, null);
+        }
+
+        writer.sync();
+
+        assertEquals(50, sink.seen.size());
+
+        writer.close();
+    }
+
+    @Test
+    public void sinkFailureSurfacesOnTheScraperThread () throws IOException {
+
+        SlowSink sink = new SlowSink(5);
+
+        AsyncRowWriter writer = new AsyncRowWriter(4, 1, new ScrapeMetrics());
+
+        try {
+            for (int idx = 0; idx < 100; idx++) {
+                writer.write(sink, new double[] { idx }, 1, null);
+            }
+            writer.sync();
+            fail("The sink's failure should have been thrown.");
+        } catch (IOException e) {
+            assertEquals("Disk full.", e.getMessage());
+        }
+
+        assertEquals(5, sink.seen.size());
+
+        try {
+            writer.close();
+            fail("close() should throw the failure too.");
+        } catch (IOException e) {
+            assertEquals("Disk full.", e.getMessage());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void writeAfterCloseThrows () throws IOException {
+
+        AsyncRowWriter writer = new AsyncRowWriter(4, 1, new ScrapeMetrics());
+
+        writer.close();
+        writer.write(new SlowSink(-1), new double[] { 1 }, 1, null);
+    }
+}
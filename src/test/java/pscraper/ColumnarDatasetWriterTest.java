@@ -0,0 +1,135 @@
+package pscraper;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.DoubleBuffer;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author Asmod
+ *
+ * @brief ColumnarDatasetWriter output read back through ColumnarDatasetReader.
+ */
+public class ColumnarDatasetWriterTest {
+
+    private static final String[] COLUMNS = { "a", "b", "c" };
+
+    private final File dir  = new File("target/test-output/columnar");
+    private final File file = new File(dir, "data.pscol");
+
+    @Before
+    public void clean () {
+
+        dir.mkdirs();
+
+        for (File old : dir.listFiles()) {
+            old.delete();
+        }
+    }
+
+    private static double[] row (int idx) {
+        return new double[] { idx, idx * 0.5, -idx };
+    }
+
+    private void assertRows (int count) throws IOException {
+
+        try (ColumnarDatasetReader reader = new ColumnarDatasetReader(file)) {
+
+            assertArrayEquals(COLUMNS, reader.getColumnNames());
+            assertEquals(count, reader.getRowCount());
+
+            for (int col = 0; col < COLUMNS.length; col++) {
+
+                DoubleBuffer values = reader.column(col);
+
+                for (int idx = 0; idx < count; idx++) {
+                    assertEquals(row(idx)[col], values.get(idx), 0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void roundTrip () throws IOException {
+
+        try (ColumnarDatasetWriter writer = new ColumnarDatasetWriter(file, COLUMNS, false)) {
+            for (int idx = 0; idx < 1000; idx++) {
+                writer.writeRow(row(idx), COLUMNS.length);
+            }
+        }
+
+        assertRows(1000);
+        assertFalse(new File(file.getPath() + ".spill").exists());
+    }
+
+    @Test
+    public void appendCarriesRowsOver () throws IOException {
+
+        try (ColumnarDatasetWriter writer = new ColumnarDatasetWriter(file, COLUMNS, false)) {
+            writer.writeRow(row(0), COLUMNS.length);
+        }
+
+        try (ColumnarDatasetWriter writer = new ColumnarDatasetWriter(file, COLUMNS, true)) {
+            writer.writeRow(row(1), COLUMNS.length);
+        }
+
+        assertRows(2);
+    }
+
+    @Test
+    public void resumesFromCommittedSpill () throws IOException {
+
+        ColumnarDatasetWriter first = new ColumnarDatasetWriter(file, COLUMNS, false, true);
+
+        for (int idx = 0; idx < 3; idx++) {
+            first.writeRow(row(idx), COLUMNS.length);
+        }
+
+        long committed = first.commit();
+
+        assertEquals(3 * COLUMNS.length * 8, committed);
+
+        /* Rows after the commit are what a failed stage leaves behind */
+        first.writeRow(row(99), COLUMNS.length);
+        first.suspend();
+        first.close();
+
+        assertFalse(file.exists());
+
+        /* What the journal does before the match is resumed */
+        try (RandomAccessFile raf = new RandomAccessFile(first.getSpillFile(), "rw")) {
+            raf.setLength(committed);
+        }
+
+        try (ColumnarDatasetWriter second = new ColumnarDatasetWriter(file, COLUMNS, false, true)) {
+
+            assertEquals(3, second.getRowsWritten());
+
+            second.writeRow(row(3), COLUMNS.length);
+        }
+
+        assertRows(4);
+    }
+
+    @Test
+    public void withoutResumeLeftoverSpillStartsOver () throws IOException {
+
+        ColumnarDatasetWriter first = new ColumnarDatasetWriter(file, COLUMNS, false, true);
+
+        first.writeRow(row(99), COLUMNS.length);
+        first.suspend();
+
+        try (ColumnarDatasetWriter second = new ColumnarDatasetWriter(file, COLUMNS, false, false)) {
+            second.writeRow(row(0), COLUMNS.length);
+        }
+
+        assertRows(1);
+    }
+}
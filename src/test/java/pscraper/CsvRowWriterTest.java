@@ -0,0 +1,141 @@
+package pscraper;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author Asmod
+ *
+ * @brief CsvRowWriter output against the String.format("%f") lines it
+ *        replaced, byte for byte.
+ */
+public class CsvRowWriterTest {
+
+    private final File dir  = new File("target/test-output/csv");
+    private final File file = new File(dir, "rows.csv");
+
+    @Before
+    public void clean () {
+
+        dir.mkdirs();
+
+        for (File old : dir.listFiles()) {
+            old.delete();
+        }
+    }
+
+    /* What writeMetricData used to write for one row */
+    private static String formatted (double[] row) {
+
+        String line = "";
+
+        for (double value : row) {
+            line = line.concat(String.format("%f,", value));
+        }
+
+        return line.substring(0, line.length() - 1) + "\n";
+    }
+
+    private static double[][] rows () {
+
+        Random rnd = new Random(0x5eedL);
+
+        double[][] rows = new double[500][];
+
+        /* Edge values first, then the sort of numbers a results table holds */
+        rows[0] = new double[] { 0, -0.0, 1, -1, 0.5, 0.1, 1.0 / 3, 2.0 / 3, 1e-7, 5e-7 };
+        rows[1] = new double[] { 999999999.999999, 1e9, -1e9, 123456789012.5, Double.NaN, 0.0000005, 0.0000015 };
+        rows[2] = new double[] { Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.MIN_VALUE, Double.MAX_VALUE };
+
+        for (int idx = 3; idx < rows.length; idx++) {
+
+            rows[idx] = new double[RowSink.COLUMNS.length];
+
+            rows[idx][0] = Math.round(rnd.nextDouble() * 10000) / 100.0;
+            rows[idx][1] = 5 * rnd.nextInt(30);
+            rows[idx][2] = rnd.nextInt(150);
+            rows[idx][3] = Math.round(rnd.nextDouble() * 120000) / 10000.0;
+            rows[idx][4] = Math.round(rnd.nextDouble() * 4000) / 100.0;
+
+            for (int col = 5; col < rows[idx].length; col++) {
+                rows[idx][col] = rnd.nextInt(30);
+            }
+
+            /* Every so often a value with more places than %f keeps */
+            if (idx % 7 == 0) {
+                rows[idx][4] = rnd.nextDouble() * 100;
+            }
+        }
+
+        return rows;
+    }
+
+    @Test
+    public void matchesStringFormatByteForByte () throws IOException {
+
+        StringBuilder expected = new StringBuilder(CsvRowWriter.HEADER).append('\n');
+
+        /* A tiny buffer, so rows straddle flushes */
+        try (CsvRowWriter writer = new CsvRowWriter(file, false, 64)) {
+            for (double[] row : rows()) {
+                writer.writeRow(row, row.length);
+                expected.append(formatted(row));
+            }
+        }
+
+        assertEquals(expected.toString(), new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void appendKeepsRowsAndHeader () throws IOException {
+
+        double[] row = { 1.5, 2.25 };
+
+        try (CsvRowWriter writer = new CsvRowWriter(file, true)) {
+            writer.writeRow(row, row.length);
+        }
+
+        try (CsvRowWriter writer = new CsvRowWriter(file, true)) {
+            writer.writeRow(row, row.length);
+        }
+
+        String expected = CsvRowWriter.HEADER + "\n" + formatted(row) + formatted(row);
+
+        assertEquals(expected, new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void commitReturnsTheLengthWritten () throws IOException {
+
+        double[] row = { 1, 2 };
+
+        try (CsvRowWriter writer = new CsvRowWriter(file, false)) {
+
+            writer.writeRow(row, row.length);
+
+            long committed = writer.commit();
+
+            assertEquals((CsvRowWriter.HEADER + "\n" + formatted(row)).length(), committed);
+            assertEquals(file.length(), committed);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void refusesToAppendUnderAnotherHeader () throws IOException {
+
+        try (FileWriter other = new FileWriter(file)) {
+            other.write("name,score\n");
+        }
+
+        new CsvRowWriter(file, true).close();
+    }
+}
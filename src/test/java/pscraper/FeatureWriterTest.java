@@ -0,0 +1,84 @@
+package pscraper;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author Asmod
+ *
+ * @brief FeatureWriter statistics, written in one go and resumed part way.
+ */
+public class FeatureWriterTest {
+
+    private final File dir = new File("target/test-output/features");
+
+    @Before
+    public void clean () {
+
+        dir.mkdirs();
+
+        for (File old : dir.listFiles()) {
+            old.delete();
+        }
+    }
+
+    private static double[] row (int idx) {
+
+        double[] row = new double[RowSink.COLUMNS.length];
+
+        for (int col = 0; col < row.length; col++) {
+            row[col] = idx * (col + 1) + (idx % 3);
+        }
+
+        return row;
+    }
+
+    private static void write (FeatureWriter writer, int from, int to) throws IOException {
+        for (int idx = from; idx < to; idx++) {
+            writer.writeRow(row(idx), RowSink.COLUMNS.length, (idx % 2 == 0) ? "CO" : "L");
+        }
+    }
+
+    @Test
+    public void resumedWriterRebuildsStatistics () throws IOException {
+
+        FeatureWriter whole = new FeatureWriter(new File(dir, "whole.pscol"));
+
+        write(whole, 0, 10);
+
+        FeatureWriter first = new FeatureWriter(new File(dir, "resumed.pscol"), true);
+
+        write(first, 0, 6);
+
+        first.commit();
+        first.suspend();
+
+        FeatureWriter resumed = new FeatureWriter(new File(dir, "resumed.pscol"), true);
+
+        assertEquals(6, resumed.getCount());
+
+        write(resumed, 6, 10);
+
+        assertEquals(whole.getCount(), resumed.getCount());
+
+        for (int col = 0; col < FeatureWriter.COLUMNS.length; col++) {
+            assertEquals(whole.getMean(col),     resumed.getMean(col),     1e-9);
+            assertEquals(whole.getVariance(col), resumed.getVariance(col), 1e-9);
+            assertEquals(whole.getMin(col),      resumed.getMin(col),      0);
+            assertEquals(whole.getMax(col),      resumed.getMax(col),      0);
+        }
+
+        whole.close();
+        resumed.close();
+
+        try (ColumnarDatasetReader reader = new ColumnarDatasetReader(new File(dir, "resumed.pscol"))) {
+            assertEquals(10, reader.getRowCount());
+            assertEquals(0, reader.column(FeatureWriter.COLUMNS.length - 1).get(0), 0);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package pscraper;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ *
+ * @author Asmod
+ *
+ * @brief ParallelGzipOutputStream output read back with GZIPInputStream.
+ */
+public class ParallelGzipOutputStreamTest {
+
+    /* Small blocks, so a few KB spans many of them and the dictionary carries over */
+    private static final int BLOCK = 4096;
+
+    private final ExecutorService pool = Executors.newFixedThreadPool(3);
+
+    @After
+    public void shutdown () {
+        pool.shutdownNow();
+    }
+
+    /* CSV-like text, so blocks compress and lean on the previous block's tail */
+    private static byte[] data (int size, long seed) {
+
+        Random        rnd  = new Random(seed);
+        StringBuilder text = new StringBuilder(size + 64);
+
+        while (text.length() < size) {
+            text.append(String.format("%f,%f,%d,%d\n", rnd.nextDouble() * 100, rnd.nextDouble() * 10,
+                                      rnd.nextInt(150), rnd.nextInt(30)));
+        }
+
+        return Arrays.copyOf(text.toString().getBytes(StandardCharsets.UTF_8), size);
+    }
+
+    private static byte[] gunzip (byte[] gz, int len) throws IOException {
+
+        ByteArrayOutputStream plain = new ByteArrayOutputStream();
+
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(gz, 0, len))) {
+
+            byte[] buf = new byte[8192];
+
+            for (int read; (read = in.read(buf)) > 0; ) {
+                plain.write(buf, 0, read);
+            }
+        }
+
+        return plain.toByteArray();
+    }
+
+    @Test
+    public void roundTripsAcrossManyBlocks () throws IOException {
+
+        byte[] data = data(BLOCK * 25 + 123, 1);
+
+        ByteArrayOutputStream gz = new ByteArrayOutputStream();
+
+        try (ParallelGzipOutputStream out = new ParallelGzipOutputStream(gz, BLOCK, Deflater.DEFAULT_COMPRESSION, pool)) {
+
+            /* Odd sized writes and single bytes, so blocks fill from both paths */
+            int pos = 0;
+
+            while (pos < data.length) {
+
+                if (pos % 3 == 0) {
+                    out.write(data[pos++]);
+                } else {
+                    int len = Math.min(777, data.length - pos);
+                    out.write(data, pos, len);
+                    pos += len;
+                }
+            }
+        }
+
+        assertArrayEquals(data, gunzip(gz.toByteArray(), gz.size()));
+    }
+
+    @Test
+    public void eachMemberIsAPlaceToCutBackTo () throws IOException {
+
+        byte[] first  = data(BLOCK * 3 + 17, 2);
+        byte[] second = data(BLOCK * 2 + 5,  3);
+        byte[] third  = data(BLOCK / 2,      4);
+
+        ByteArrayOutputStream gz = new ByteArrayOutputStream();
+
+        int cut;
+
+        try (ParallelGzipOutputStream out = new ParallelGzipOutputStream(gz, BLOCK, Deflater.DEFAULT_COMPRESSION, pool)) {
+
+            out.write(first);
+            out.finishMember();
+
+            out.write(second);
+            out.finishMember();
+
+            cut = gz.size();
+
+            /* What a failed stage leaves after the last commit */
+            out.write(third);
+        }
+
+        byte[] both = new byte[first.length + second.length];
+
+        System.arraycopy(first,  0, both, 0,            first.length);
+        System.arraycopy(second, 0, both, first.length, second.length);
+
+        assertArrayEquals(both, gunzip(gz.toByteArray(), cut));
+
+        byte[] all = Arrays.copyOf(both, both.length + third.length);
+
+        System.arraycopy(third, 0, all, both.length, third.length);
+
+        assertArrayEquals(all, gunzip(gz.toByteArray(), gz.size()));
+    }
+}
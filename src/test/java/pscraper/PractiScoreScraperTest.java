@@ -0,0 +1,308 @@
+package pscraper;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+
+/**
+ *
+ * @author Asmod
+ *
+ * @brief Row filtering and output naming, fed a results table directly.
+ */
+public class PractiScoreScraperTest {
+
+    /* Keeps the points of every row written, which is enough to tell the shooters apart */
+    private static class PointsSink implements RowSink {
+
+        final List<Double> points = new ArrayList<>();
+
+        @Override
+        public void writeRow (double[] row, int len) {
+            points.add(row[2]);
+        }
+
+        @Override
+        public void flush () {
+        }
+
+        @Override
+        public long commit () {
+            return 0;
+        }
+
+        @Override
+        public void close () {
+        }
+    }
+
+    private static String[] shooter (String div, double points) {
+
+        String[] cells = new String[PractiScoreScraper.PROC_IDX + 1];
+
+        for (int idx = 0; idx < cells.length; idx++) {
+            cells[idx] = "1";
+        }
+
+        cells[PractiScoreScraper.MAXPTS_IDX] = "100";
+        cells[PractiScoreScraper.PTS_IDX]    = Double.toString(points);
+        cells[PractiScoreScraper.DIV_IDX]    = div;
+        cells[PractiScoreScraper.NAME_IDX]   = "Shooter";
+        cells[PractiScoreScraper.MEMBER_IDX] = "A1";
+
+        return cells;
+    }
+
+    private static String[][] table () {
+
+        return new String[][] {
+            new String[0],
+            shooter("Limited",        90),
+            shooter("Limited Optics", 80),
+            shooter("Limited",        70),
+            shooter("Limited Optics", 60)
+        };
+    }
+
+    private static List<Double> scrape (String division) {
+
+        String[][] rows = table();
+
+        PointsSink sink = new PointsSink();
+
+        PractiScoreScraper scraper = new PractiScoreScraper(new ArrayList<>(), division, true);
+
+        scraper.fwriter = sink;
+        scraper.processStage(rows, 1, 2, 0, 1);
+
+        return sink.points;
+    }
+
+    private static String[] result (String div, String name, String psbl, String stagePoints, String points, String hf) {
+
+        String[] cells = shooter(div, Double.parseDouble(points));
+
+        cells[PractiScoreScraper.PSBL_IDX]   = psbl;
+        cells[PractiScoreScraper.MAXPTS_IDX] = stagePoints;
+        cells[PractiScoreScraper.PTS_IDX]    = points;
+        cells[PractiScoreScraper.HF_IDX]     = hf;
+        cells[PractiScoreScraper.NAME_IDX]   = name;
+
+        return cells;
+    }
+
+    /* One stage as the overall table shows it, percentages against the overall winner */
+    private static String[][] overallTable () {
+
+        return new String[][] {
+            new String[0],
+            result("Limited",      "Blake", "100.00", "120.0000", "130", "8.0000"),
+            result("Carry Optics", "Avery", "80.00",  "96.0000",  "128", "6.4000"),
+            result("Carry Optics", "Casey", "64.00",  "76.8000",  "102", "5.1200"),
+            result("Limited",      "Dana",  "50.00",  "60.0000",  "90",  "4.0000")
+        };
+    }
+
+    /* The same stage with Carry Optics selected, where Avery is the winner */
+    private static String[][] carryOpticsTable () {
+
+        return new String[][] {
+            new String[0],
+            result("Carry Optics", "Avery", "100.00", "120.0000", "128", "6.4000"),
+            result("Carry Optics", "Casey", "80.00",  "96.0000",  "102", "5.1200")
+        };
+    }
+
+    private static File cleanDir (String name) {
+
+        File dir = new File("target/test-output/" + name);
+
+        dir.mkdirs();
+
+        for (File old : dir.listFiles()) {
+            old.delete();
+        }
+
+        return dir;
+    }
+
+    /* Scrapes the given stage tables into <dir>/<name>_<DIV>.csv files */
+    private static void scrapeTo (File dir, String name, String division, List<String[][]> stages) {
+
+        Match match = new Match(dir.getPath() + "/" + name, "https://example.invalid/results/" + name);
+
+        PractiScoreScraper scraper = new PractiScoreScraper(new ArrayList<>(), division, true);
+
+        scraper.setJournalFile(null);
+        scraper.openOutputs(match);
+
+        for (int stage = 1; stage <= stages.size(); stage++) {
+            scraper.processStage(stages.get(stage - 1), stage, stages.size() + 1, 0, 1);
+        }
+
+        scraper.closeLogFile();
+    }
+
+    private static List<String> lines (File dir, String name) throws IOException {
+        return Files.readAllLines(new File(dir, name).toPath());
+    }
+
+    @Test
+    public void allModeMatchesSingleDivisionScrape () throws IOException {
+
+        File dir = cleanDir("parity-all");
+
+        scrapeTo(dir, "overall", "ALL", Collections.singletonList(overallTable()));
+        scrapeTo(dir, "single",  "CO",  Collections.singletonList(carryOpticsTable()));
+
+        List<String> single = lines(dir, "single_CO.csv");
+
+        assertEquals(3, single.size());
+        assertEquals(single, lines(dir, "overall_CO.csv"));
+    }
+
+    @Test
+    public void divisionPercentIsAgainstTheDivisionWinner () {
+
+        String[][] rows = overallTable();
+
+        assertEquals(8.0, PractiScoreScraper.divisionTopHitFactors(rows).get("L"),  0);
+        assertEquals(6.4, PractiScoreScraper.divisionTopHitFactors(rows).get("CO"), 0);
+
+        assertEquals(80.0, PractiScoreScraper.divisionPercent(5.12, 6.4), 0);
+        assertEquals(0,    PractiScoreScraper.divisionPercent(5.12, null), 0);
+    }
+
+    private static String html (List<String[][]> tables) {
+
+        StringBuilder html = new StringBuilder("<html><body><select id=\"resultLevel\"></select>");
+
+        for (String[][] table : tables) {
+
+            html.append("\n<table id=\"mainResultsTable\">\n<tr><th>Place</th><th>Name</th></tr>");
+
+            for (int rowIdx = 1; rowIdx < table.length; rowIdx++) {
+
+                html.append("\n<tr>");
+
+                for (String cell : table[rowIdx]) {
+                    html.append("<td>").append(cell.replace("&", "&amp;")).append("</td>");
+                }
+
+                html.append("</tr>");
+            }
+
+            html.append("\n</table>");
+        }
+
+        return html.append("</body></html>").toString();
+    }
+
+    @Test
+    public void snapshotMatchesStageByStage () throws IOException {
+
+        String[][] stage1 = overallTable();
+        String[][] stage2 = carryOpticsTable();
+
+        stage1[2][PractiScoreScraper.NAME_IDX] = "Avery & Co";
+
+        List<String[][]> stages = Arrays.asList(stage1, stage2);
+
+        /* The capture carries the match level table first, which gets dropped */
+        List<String[][]> page = new ArrayList<>();
+
+        page.add(overallTable());
+        page.addAll(stages);
+
+        List<String[][]> snapshot = PractiScoreScraper.snapshotStages(html(page), 3);
+
+        assertNotNull(snapshot);
+        assertEquals(2, snapshot.size());
+
+        for (int idx = 0; idx < stages.size(); idx++) {
+            for (int row = 0; row < stages.get(idx).length; row++) {
+                assertArrayEquals(stages.get(idx)[row], snapshot.get(idx)[row]);
+            }
+        }
+
+        File dir = cleanDir("parity-snapshot");
+
+        scrapeTo(dir, "stages",   "CO", stages);
+        scrapeTo(dir, "snapshot", "CO", snapshot);
+
+        assertEquals(5, lines(dir, "stages_CO.csv").size());
+        assertEquals(lines(dir, "stages_CO.csv"), lines(dir, "snapshot_CO.csv"));
+    }
+
+    @Test
+    public void limitedLeavesOutLimitedOptics () {
+
+        List<Double> points = scrape("L");
+
+        assertEquals(2, points.size());
+        assertEquals(90, points.get(0), 0);
+        assertEquals(70, points.get(1), 0);
+    }
+
+    @Test
+    public void limitedOpticsLeavesOutLimited () {
+
+        List<Double> points = scrape("LO");
+
+        assertEquals(2, points.size());
+        assertEquals(80, points.get(0), 0);
+        assertEquals(60, points.get(1), 0);
+    }
+
+    @Test
+    public void divisionPassesWriteSeparateFiles () throws IOException {
+
+        File dir = new File("target/test-output/divisions");
+
+        dir.mkdirs();
+
+        for (File old : dir.listFiles()) {
+            old.delete();
+        }
+
+        Match match = new Match(dir.getPath() + "/match", "https://example.invalid/results/1");
+
+        /* The same match scraped once per division, as --divisions L,LO does */
+        for (String division : new String[] { "L", "LO" }) {
+
+            PractiScoreScraper scraper = new PractiScoreScraper(new ArrayList<>(), division, true);
+
+            scraper.setJournalFile(null);
+            scraper.setFeatureOutput(true);
+
+            scraper.openOutputs(match);
+            scraper.processStage(table(), 1, 2, 0, 1);
+            scraper.closeLogFile();
+        }
+
+        assertFalse(new File(dir, "match.csv").exists());
+
+        for (String division : new String[] { "L", "LO" }) {
+
+            List<String> lines = Files.readAllLines(new File(dir, "match_" + division + ".csv").toPath());
+
+            assertEquals(CsvRowWriter.HEADER, lines.get(0));
+            assertEquals(3, lines.size());
+
+            try (ColumnarDatasetReader features = new ColumnarDatasetReader(new File(dir, "match_" + division + "_features.pscol"))) {
+                assertEquals(2, features.getRowCount());
+                assertEquals(1, features.column("div_" + division).get(0), 0);
+            }
+        }
+    }
+}
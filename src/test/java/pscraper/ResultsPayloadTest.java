@@ -0,0 +1,136 @@
+package pscraper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Scanner;
+import org.junit.Test;
+
+/**
+ *
+ * @author Asmod
+ *
+ * @brief ResultsPayload decoding a results payload fixture, rather than the
+ *        one StandInServer generates for the benchmarks.
+ *
+ *        The fixture mixes the field aliases, carries numbers as JSON
+ *        numbers, has fields we don't read, an Overall list alongside the
+ *        division lists and a disqualified shooter with zeroed metrics.
+ */
+public class ResultsPayloadTest {
+
+    private static String fixture () throws IOException {
+
+        try (InputStream in = ResultsPayloadTest.class.getResourceAsStream("results-payload.json");
+             Scanner scanner = new Scanner(in, StandardCharsets.UTF_8.name())) {
+
+            return scanner.useDelimiter("\\A").next();
+        }
+    }
+
+    @Test
+    public void decodesEveryStageTopScorerFirst () throws IOException {
+
+        List<String[][]> tables = ResultsPayload.decode(fixture(), 3);
+
+        assertNotNull(tables);
+        assertEquals(2, tables.size());
+
+        String[][] stage1 = tables.get(0);
+
+        /* Header row plus four shooters, the Overall list is ignored when division lists are present */
+        assertEquals(5, stage1.length);
+        assertEquals(0, stage1[0].length);
+
+        assertEquals("120.0",        stage1[1][PractiScoreScraper.MAXPTS_IDX]);
+        assertEquals("Carry Optics", stage1[1][PractiScoreScraper.DIV_IDX]);
+        assertEquals("Avery Hale",   stage1[1][PractiScoreScraper.NAME_IDX]);
+        assertEquals("A101",         stage1[1][PractiScoreScraper.MEMBER_IDX]);
+        assertEquals("8.2857",       stage1[1][PractiScoreScraper.HF_IDX]);
+
+        /* Aliased fields land in the same cells */
+        String[] limited = null;
+
+        for (String[] row : stage1) {
+            if (row.length > 0 && "Limited".equals(row[PractiScoreScraper.DIV_IDX])) {
+                limited = row;
+            }
+        }
+
+        assertNotNull(limited);
+        assertEquals("Blake Moss", limited[PractiScoreScraper.NAME_IDX]);
+        assertEquals("L202",       limited[PractiScoreScraper.MEMBER_IDX]);
+        assertEquals("6.4216",     limited[PractiScoreScraper.HF_IDX]);
+        assertEquals("20.4",       limited[PractiScoreScraper.TIME_IDX]);
+        assertEquals("1",          limited[PractiScoreScraper.M_IDX]);
+    }
+
+    @Test
+    public void decodedTablesScrapeLikeThePage () throws IOException {
+
+        List<String[][]> tables = ResultsPayload.decode(fixture(), 3);
+
+        List<double[]> rows = new ArrayList<>();
+
+        PractiScoreScraper scraper = new PractiScoreScraper(new ArrayList<>(), "CO", true);
+
+        scraper.fwriter = new RowSink() {
+
+            @Override
+            public void writeRow (double[] row, int len) {
+                rows.add(row.clone());
+            }
+
+            @Override
+            public void flush () {
+            }
+
+            @Override
+            public long commit () {
+                return 0;
+            }
+
+            @Override
+            public void close () {
+            }
+        };
+
+        for (int stage = 1; stage <= tables.size(); stage++) {
+            scraper.processStage(tables.get(stage - 1), stage, 3, 0, 1);
+        }
+
+        /* Two CO shooters a stage, the disqualified one is rejected on its zero percent */
+        assertEquals(4, rows.size());
+
+        /* psbl, max points (the stage's top score), points, hit factor, time */
+        assertEquals(100.0,  rows.get(0)[0], 0);
+        assertEquals(120.0,  rows.get(0)[1], 0);
+        assertEquals(145,    rows.get(0)[2], 0);
+        assertEquals(8.2857, rows.get(0)[3], 0);
+        assertEquals(17.5,   rows.get(0)[4], 0);
+
+        assertEquals(88.12,  rows.get(1)[0], 0);
+        assertEquals(120.0,  rows.get(1)[1], 0);
+
+        assertEquals(80.0,   rows.get(3)[1], 0);
+        assertEquals(7.2385, rows.get(3)[3], 0);
+    }
+
+    @Test
+    public void wrongStageCountIsNotRecognised () throws IOException {
+        assertNull(ResultsPayload.decode(fixture(), 5));
+    }
+
+    @Test
+    public void unrelatedJsonIsNotRecognised () {
+        assertNull(ResultsPayload.decode("{\"status\": \"ok\"}", 3));
+        assertNull(ResultsPayload.decode("[{\"name\": \"Stage 1\", \"Carry Optics\": [{\"id\": 1}]}]", 2));
+        assertNull(ResultsPayload.decode("not json", 3));
+    }
+}
@@ -0,0 +1,184 @@
+package pscraper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author Asmod
+ *
+ * @brief ScrapeJournal rolling back and resetting matches, including ones
+ *        with an output only written on close (offset -1).
+ */
+public class ScrapeJournalTest {
+
+    private static final String URL = "https://example.invalid/results/1";
+
+    private final File dir     = new File("target/test-output/journal");
+    private final File journal = new File(dir, "pscraper.journal");
+    private final File csv     = new File(dir, "match_CO.csv");
+    private final File closed  = new File(dir, "match_CO.bin");
+
+    @Before
+    public void clean () {
+
+        dir.mkdirs();
+
+        for (File old : dir.listFiles()) {
+            old.delete();
+        }
+    }
+
+    private static void write (File file, String text, boolean append) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(file, append)) {
+            out.write(text.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static Map<String, Long> offsets (File file) {
+
+        Map<String, Long> offsets = new LinkedHashMap<>();
+
+        offsets.put(file.getPath(), file.length());
+
+        return offsets;
+    }
+
+    @Test
+    public void rollBackCutsToTheLastFinishedStage () throws IOException {
+
+        write(csv, "header\n", false);
+
+        try (ScrapeJournal j = new ScrapeJournal(journal)) {
+
+            j.fileOpened(URL, "CO", csv.getPath(), csv.length());
+
+            write(csv, "stage1\n", true);
+            j.stageDone(URL, "CO", 1, offsets(csv));
+
+            /* Half of stage 2, then a crash */
+            write(csv, "stage2", true);
+        }
+
+        try (ScrapeJournal j = new ScrapeJournal(journal)) {
+
+            assertTrue(j.isStageDone(URL, "CO", 1));
+            assertFalse(j.isStageDone(URL, "CO", 2));
+
+            j.rollBack(URL, "CO");
+        }
+
+        assertEquals("header\nstage1\n".length(), csv.length());
+    }
+
+    @Test
+    public void closeOnlyOutputMakesTheMatchNonResumable () throws IOException {
+
+        write(csv, "header\n", false);
+
+        try (ScrapeJournal j = new ScrapeJournal(journal)) {
+
+            j.fileOpened(URL, "CO", csv.getPath(), csv.length());
+            j.fileOpened(URL, "CO", closed.getPath(), -1);
+
+            write(csv, "stage1\n", true);
+            write(closed, "partial", false);
+
+            j.stageDone(URL, "CO", 1, offsets(csv));
+        }
+
+        try (ScrapeJournal j = new ScrapeJournal(journal)) {
+
+            /* Its stages can't be skipped, since the close-only output can't be cut back to them */
+            assertFalse(j.isStageDone(URL, "CO", 1));
+            assertTrue(j.hasProgress(URL, "CO"));
+
+            j.rollBack(URL, "CO");
+
+            /* Rolling back resets instead: the match starts over */
+            assertFalse(j.hasProgress(URL, "CO"));
+        }
+
+        assertEquals("header\n".length(), csv.length());
+        assertFalse(closed.exists());
+
+        /* And the reset was journaled, so it holds after a reload */
+        try (ScrapeJournal j = new ScrapeJournal(journal)) {
+            assertFalse(j.hasProgress(URL, "CO"));
+        }
+    }
+
+    @Test
+    public void resetWithTruncateRestoresOutputs () throws IOException {
+
+        write(csv, "earlier match\n", false);
+
+        try (ScrapeJournal j = new ScrapeJournal(journal)) {
+
+            j.fileOpened(URL, "CO", csv.getPath(), csv.length());
+            j.fileOpened(URL, "CO", closed.getPath(), -1);
+
+            write(csv, "stage1\n", true);
+            write(closed, "whole match", false);
+
+            j.stageDone(URL, "CO", 1, offsets(csv));
+            j.matchDone(URL, "CO");
+
+            assertTrue(j.isMatchDone(URL, "CO"));
+
+            j.reset(URL, "CO", true);
+
+            assertFalse(j.isMatchDone(URL, "CO"));
+        }
+
+        assertEquals("earlier match\n".length(), csv.length());
+        assertFalse(closed.exists());
+    }
+
+    @Test
+    public void resetWithoutTruncateLeavesOutputsAlone () throws IOException {
+
+        write(csv, "header\nstage1\n", false);
+
+        try (ScrapeJournal j = new ScrapeJournal(journal)) {
+
+            j.fileOpened(URL, "CO", csv.getPath(), 7);
+            j.fileOpened(URL, "CO", closed.getPath(), -1);
+
+            write(closed, "whole match", false);
+
+            j.reset(URL, "CO", false);
+        }
+
+        assertEquals("header\nstage1\n".length(), csv.length());
+        assertTrue(closed.exists());
+    }
+
+    @Test
+    public void tornLastLineIsIgnoredAndCutOff () throws IOException {
+
+        try (ScrapeJournal j = new ScrapeJournal(journal)) {
+            j.matchDone(URL, "CO");
+        }
+
+        long whole = journal.length();
+
+        write(journal, "RESET\t" + URL, true);
+
+        try (ScrapeJournal j = new ScrapeJournal(journal)) {
+            assertTrue(j.isMatchDone(URL, "CO"));
+        }
+
+        assertEquals(whole, journal.length());
+    }
+}
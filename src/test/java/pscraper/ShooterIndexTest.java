@@ -0,0 +1,116 @@
+package pscraper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import org.junit.Test;
+
+/**
+ *
+ * @author Asmod
+ *
+ * @brief Which adds to a ShooterIndex replace an entry and which add one,
+ *        and what survives a save and load.
+ */
+public class ShooterIndexTest {
+
+    private static double[] metrics (double points) {
+
+        double[] row = new double[ShooterIndex.COLUMNS];
+
+        row[2] = points;
+
+        return row;
+    }
+
+    @Test
+    public void rescrapedStageReplacesEntry () {
+
+        ShooterIndex index = new ShooterIndex();
+
+        int first  = index.add("https://m/1", 1, "CO", "A1", "Shooter", metrics(80));
+        int second = index.add("https://m/1", 1, "CO", "A1", "Shooter", metrics(90));
+
+        assertEquals(first, second);
+        assertEquals(1, index.size());
+        assertEquals(90, index.metric(first, 2), 0);
+    }
+
+    @Test
+    public void secondDivisionAtSameMatchKeepsBoth () {
+
+        ShooterIndex index = new ShooterIndex();
+
+        int co = index.add("https://m/1", 1, "CO", "A1", "Shooter", metrics(80));
+        int lo = index.add("https://m/1", 1, "LO", "A1", "Shooter", metrics(70));
+
+        assertEquals(2, index.size());
+        assertEquals("CO", index.division(co));
+        assertEquals("LO", index.division(lo));
+        assertEquals(80, index.metric(co, 2), 0);
+        assertEquals(70, index.metric(lo, 2), 0);
+        assertEquals(2, index.forShooter("A1", null).length);
+    }
+
+    @Test
+    public void saveAndLoadKeepEntriesAndFinishedMatches () throws IOException {
+
+        File dir = new File("target/test-output/index");
+
+        dir.mkdirs();
+
+        File file = new File(dir, "shooters.psidx");
+
+        ShooterIndex index = new ShooterIndex();
+
+        /* Enough entries that every column goes out over more than one chunk */
+        for (int entry = 0; entry < 20000; entry++) {
+            index.add("https://m/" + (entry % 7), entry % 12 + 1, (entry % 2 == 0) ? "CO" : "L",
+                      "A" + (entry % 5000), "Shooter", metrics(entry));
+        }
+
+        index.markMatch("https://m/1", "CO");
+        index.markMatch("https://m/2", "ALL");
+
+        index.save(file);
+
+        /* Saving again replaces the file in place */
+        index.markMatch("https://m/3", "L");
+        index.save(file);
+
+        assertFalse(new File(dir, "shooters.psidx.tmp").exists());
+
+        ShooterIndex loaded = ShooterIndex.load(file);
+
+        assertEquals(index.size(), loaded.size());
+        assertEquals(index.shooterCount(), loaded.shooterCount());
+
+        for (int entry = 0; entry < index.size(); entry += 997) {
+            assertEquals(index.metric(entry, 2), loaded.metric(entry, 2), 0);
+            assertEquals(index.stage(entry),     loaded.stage(entry));
+            assertEquals(index.match(entry),     loaded.match(entry));
+            assertEquals(index.division(entry),  loaded.division(entry));
+        }
+
+        assertEquals(index.forShooter("A42", null).length, loaded.forShooter("A42", null).length);
+
+        assertTrue(loaded.hasMatch("https://m/1", "CO"));
+        assertTrue(loaded.hasMatch("https://m/2", "ALL"));
+        assertTrue(loaded.hasMatch("https://m/3", "L"));
+        assertFalse(loaded.hasMatch("https://m/1", "L"));
+    }
+
+    @Test
+    public void unmarkedMatchIsNoLongerFinished () {
+
+        ShooterIndex index = new ShooterIndex();
+
+        index.markMatch("https://m/1", "CO");
+        index.unmarkMatch("https://m/1", "CO");
+
+        assertFalse(index.hasMatch("https://m/1", "CO"));
+    }
+}